@@ -0,0 +1,112 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A buffered {@link OutputStream} whose buffer can grow as {@link BufferSizing#adaptive(int, int)} describes.  It
+ * times a few writes of full buffers at each size, and doubles the buffer while the throughput of the last size beats
+ * the one before by at least {@link #MIN_GAIN}.  Once it stops growing, it stops timing.  Every write is copied into the
+ * buffer, even one bigger than it, and the buffer is drained as soon as it is full, so the stream beneath sees writes
+ * of exactly the buffer's size whatever size chunks come from above, e.g. the 8K chunks of an
+ * {@link java.io.OutputStreamWriter}.  Not thread safe.
+ */
+final class AdaptiveOutputStream extends OutputStream {
+    /** the number of full-buffer writes timed at each size */
+    static final int SAMPLES_PER_SIZE = 4;
+
+    /** the throughput gain, as a fraction, that a bigger buffer has to show to keep growing */
+    static final double MIN_GAIN = 0.10;
+
+    private final OutputStream out;
+    private final int maxSize;
+    private byte[] buf;
+    private int count = 0;
+    private boolean settled;
+    private int samples = 0;
+    private long sampleBytes = 0;
+    private long sampleNanos = 0;
+    private double lastRate = 0;        // bytes per nanosecond at the previous size
+
+    AdaptiveOutputStream(OutputStream out, BufferSizing sizing) {
+        this.out = out;
+        this.maxSize = sizing.maxSize;
+        this.buf = new byte[sizing.initialSize];
+        this.settled = sizing.initialSize == sizing.maxSize;
+    }
+
+    /**
+     * @return the current size of the buffer
+     */
+    int bufferSize() {
+        return buf.length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buf[count++] = (byte) b;
+        if (count == buf.length) {
+            flushBuffer();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == buf.length) {
+                flushBuffer();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (OutputStream outRef = out) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (settled || count < buf.length) {
+            out.write(buf, 0, count);
+            count = 0;
+            return;
+        }
+        long start = System.nanoTime();
+        out.write(buf, 0, count);
+        sampleNanos += System.nanoTime() - start;
+        sampleBytes += count;
+        count = 0;
+        if (++samples == SAMPLES_PER_SIZE) {
+            adapt();
+        }
+    }
+
+    private void adapt() {
+        double rate = sampleBytes / (double) Math.max(1, sampleNanos);
+        if (lastRate == 0 || rate >= lastRate * (1 + MIN_GAIN)) {
+            lastRate = rate;
+            buf = new byte[(int) Math.min(maxSize, 2L * buf.length)];
+            settled = buf.length == maxSize;
+        } else {
+            settled = true;
+        }
+        samples = 0;
+        sampleBytes = 0;
+        sampleNanos = 0;
+    }
+}
@@ -0,0 +1,143 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link BufferSink} that hands full buffers to a dedicated writer thread, so the thread that fills the buffers never
+ * waits on the disk unless all of the buffers are waiting to be written.  With two buffers, this is double buffering:
+ * one is filled while the other is written.  The fixed number of buffers is the back-pressure: when the writer thread
+ * falls behind, {@link #drain} blocks until it hands a buffer back.
+ * <p>
+ * An IOException on the writer thread is rethrown by the next call to {@link #drain} or {@link #finish}.  After a
+ * failure, the writer thread stops writing, but keeps handing buffers back, so the filling thread can't get stuck.
+ */
+final class AsyncBufferSink implements BufferSink {
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final WritableByteChannel channel;
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> full = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final ByteBuffer first;
+    private volatile IOException failure = null;
+    private boolean ended = false;
+
+    /**
+     * Allocates the buffers and starts the writer thread.
+     * @param channel where the writer thread writes the buffers
+     * @param bufferCount the number of buffers, at least 2
+     * @param bufferSize the size of each direct buffer, in bytes, at least 1
+     * @param name the name of the writer thread
+     */
+    AsyncBufferSink(WritableByteChannel channel, int bufferCount, int bufferSize, String name) {
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("bufferCount must be at least 2: " + bufferCount);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1: " + bufferSize);
+        }
+        this.channel = channel;
+        this.free = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 1; i < bufferCount; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.first = ByteBuffer.allocateDirect(bufferSize);
+        this.writer = new Thread(this::writeLoop, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return the first buffer to fill
+     */
+    ByteBuffer first() {
+        return first;
+    }
+
+    @Override
+    public ByteBuffer drain(ByteBuffer bb) throws IOException {
+        checkFailure();
+        ((Buffer) bb).flip();                   // cast to Buffer so this still runs on Java 8 when built with a newer javac
+        full.add(bb);
+        try {
+            bb = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a buffer");
+        }
+        checkFailure();
+        return bb;
+    }
+
+    @Override
+    public void finish(ByteBuffer last) throws IOException {
+        checkFailure();
+        ((Buffer) last).flip();
+        full.add(last);
+        end();
+        checkFailure();
+    }
+
+    /**
+     * Stops the writer thread, once it has written every buffer that has already been handed to it, and closes the
+     * channel.  A buffer that is being filled is not written.
+     * @throws IOException if the channel could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            end();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void end() throws InterruptedIOException {
+        if (!ended) {
+            ended = true;
+            full.add(END);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the writer thread");
+            }
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("writer thread failed", e);
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            for (ByteBuffer bb; (bb = full.take()) != END; ) {
+                if (failure == null) {
+                    try {
+                        while (bb.hasRemaining()) {
+                            channel.write(bb);
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                    } catch (RuntimeException e) {
+                        failure = new IOException(e);
+                    }
+                }
+                ((Buffer) bb).clear();
+                free.add(bb);
+            }
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("writer thread was interrupted");
+        }
+    }
+}
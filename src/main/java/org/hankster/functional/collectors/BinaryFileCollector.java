@@ -0,0 +1,180 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Collector} that writes {@link Stream} contents to a file as binary records, the byte-oriented counterpart
+ * of {@link FileCollector}.  A {@link RecordSerializer} writes each object straight into a direct buffer, so there is
+ * no intermediate String.  Records are framed in one of two ways:
+ * <ul>
+ *     <li>fixed-width, where every record is exactly recordSize bytes and the serializer must write exactly that many</li>
+ *     <li>length-prefixed, where each record is preceded by its length as an unsigned LEB128 varint (the encoding
+ *     protocol buffers use), so records can be any length.  Each record is serialized into a reusable scratch buffer
+ *     first, to learn its length, and the scratch buffer grows when a record doesn't fit.</li>
+ * </ul>
+ * Like {@link FileCollector}, every thread shares the same buffer, so this is meant for sequential streams.
+ * @param <T> the type of objects written
+ */
+public class BinaryFileCollector<T> implements Collector<T, BinaryFileCollector<T>, Path>, Closeable {
+
+    /** the size of the direct buffer records are written into */
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    Path path;
+    RecordSerializer<? super T> serializer;
+    int recordSize;                                 // 0 for length-prefixed records
+    ChannelBufferSink sink = null;
+    ByteBuffer buffer = null;
+    ByteBuffer scratch = null;
+
+    /**
+     * Creates a Collector that writes the upstream objects to the specified file as fixed-width records.  The file is
+     * closed upon completion.  If it does not complete, (if, for instance, a RuntimeException is thrown), you will
+     * have to call close() on the collector.  The file is created even if the upstream is empty
+     * @param path the file to write to
+     * @param recordSize the number of bytes in every record, at most {@link #BUFFER_SIZE}
+     * @param serializer writes exactly recordSize bytes for each object
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public BinaryFileCollector(Path path, int recordSize, RecordSerializer<? super T> serializer, OpenOption... options) {
+        if (recordSize <= 0 || recordSize > BUFFER_SIZE) {
+            throw new IllegalArgumentException("recordSize must be between 1 and " + BUFFER_SIZE + ": " + recordSize);
+        }
+        open(path, recordSize, serializer, options);
+    }
+
+    /**
+     * Creates a Collector that writes the upstream objects to the specified file as records prefixed by their
+     * length.  The file is closed upon completion.  If it does not complete, (if, for instance, a RuntimeException is
+     * thrown), you will have to call close() on the collector.  The file is created even if the upstream is empty
+     * @param path the file to write to
+     * @param serializer writes a record of any length for each object
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public BinaryFileCollector(Path path, RecordSerializer<? super T> serializer, OpenOption... options) {
+        open(path, 0, serializer, options);
+        this.scratch = ByteBuffer.allocate(VarintFraming.INITIAL_SCRATCH_SIZE);
+    }
+
+    private void open(Path path, int recordSize, RecordSerializer<? super T> serializer, OpenOption... options) {
+        try {
+            this.path = path;
+            this.recordSize = recordSize;
+            this.serializer = serializer;
+            this.sink = new ChannelBufferSink(FileChannel.open(path, FileOptions.forWriting(options)));
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        } catch (IOException e) {
+            closeAndThrow(e);
+        }
+    }
+
+    @Override
+    public Supplier<BinaryFileCollector<T>> supplier() {
+        return () -> this;
+    }
+
+    @Override
+    public BiConsumer<BinaryFileCollector<T>, T> accumulator() {
+        return (collector, t) -> {
+            try {
+                if (recordSize > 0) {
+                    writeFixedWidth(t);
+                } else {
+                    writeLengthPrefixed(t);
+                }
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    // supplier will always return the single instance, so combining is simple--just pick one and return it
+    @Override
+    public BinaryOperator<BinaryFileCollector<T>> combiner() {
+        return (c1, c2) -> c1;
+    }
+
+    @Override
+    public Function<BinaryFileCollector<T>, Path> finisher() {
+        return collector -> {
+            try {
+                sink.finish(buffer);
+                close();
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+            return path;
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.noneOf(Characteristics.class);
+    }
+
+    /**
+     * Closes the file.  Records still in the buffer are not written.
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try (ChannelBufferSink sinkRef = sink) {
+
+        } finally {
+            sink = null;
+            buffer = null;
+            scratch = null;
+        }
+    }
+
+    // casts to Buffer so this still runs on Java 8 when built with a newer javac
+    private void writeFixedWidth(T t) throws IOException {
+        if (buffer.remaining() < recordSize) {
+            buffer = sink.drain(buffer);
+        }
+        int start = buffer.position();
+        ((Buffer) buffer).limit(start + recordSize);
+        try {
+            serializer.serialize(t, buffer);
+        } catch (RuntimeException e) {
+            ((Buffer) buffer).position(start);
+            throw e;
+        } finally {
+            ((Buffer) buffer).limit(buffer.capacity());
+        }
+        if (buffer.position() != start + recordSize) {
+            int written = buffer.position() - start;
+            ((Buffer) buffer).position(start);
+            throw new IllegalArgumentException("serializer wrote " + written + " bytes, but records are " + recordSize + " bytes");
+        }
+    }
+
+    private void writeLengthPrefixed(T t) throws IOException {
+        scratch = VarintFraming.serialize(serializer, t, scratch);
+        buffer = VarintFraming.write(scratch, buffer, sink);
+    }
+
+    private void closeAndThrow(IOException e) {
+        try {
+            close();
+        } catch (IOException e2){
+            e.addSuppressed(e2);
+        }
+        throw new UncheckedIOException(e);
+    }
+}
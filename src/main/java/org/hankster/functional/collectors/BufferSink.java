@@ -0,0 +1,27 @@
+package org.hankster.functional.collectors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Somewhere for a {@link LineEncoder} to put the bytes it encodes.  Buffers are handed back and forth in write mode:
+ * the bytes that were encoded are the ones between 0 and the buffer's position.
+ */
+interface BufferSink extends Closeable {
+
+    /**
+     * Takes a buffer that the encoder has run out of room in, and returns a buffer to continue encoding into.
+     * @param full a buffer in write mode
+     * @return a buffer in write mode with room to encode into, which may be the same buffer
+     * @throws IOException if the bytes could not be written
+     */
+    ByteBuffer drain(ByteBuffer full) throws IOException;
+
+    /**
+     * Takes the last, partially filled, buffer once the encoder has been flushed.  This does not close the sink.
+     * @param last a buffer in write mode
+     * @throws IOException if the bytes could not be written
+     */
+    void finish(ByteBuffer last) throws IOException;
+}
@@ -0,0 +1,51 @@
+package org.hankster.functional.collectors;
+
+/**
+ * How big a buffer a {@link FileCollector} collects encoded bytes in before writing them to the file.  A bigger buffer
+ * means fewer, larger writes, which is what fast storage wants for sequential multi-gigabyte files.
+ */
+public final class BufferSizing {
+
+    /** no buffer beyond the writers' own, which write to the file in chunks of about 8K */
+    public static final BufferSizing DEFAULT = new BufferSizing(0, 0);
+
+    /** the smallest buffer that may be asked for */
+    public static final int MIN_SIZE = 1 << 10;
+
+    final int initialSize;
+    final int maxSize;
+
+    private BufferSizing(int initialSize, int maxSize) {
+        this.initialSize = initialSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param bytes the size of the buffer
+     * @return a buffer of a fixed size
+     */
+    public static BufferSizing fixed(int bytes) {
+        return adaptive(bytes, bytes);
+    }
+
+    /**
+     * Starts with a buffer of initialBytes and doubles it as long as doing so makes the writes to the file measurably
+     * faster, up to maxBytes.  Once doubling stops helping, the size stays put for the rest of the file.
+     * @param initialBytes the size of the first buffer
+     * @param maxBytes the largest the buffer may grow to
+     * @return an adaptive buffer size
+     */
+    public static BufferSizing adaptive(int initialBytes, int maxBytes) {
+        if (initialBytes < MIN_SIZE || maxBytes < initialBytes) {
+            throw new IllegalArgumentException("need " + MIN_SIZE + " <= initialBytes <= maxBytes: " + initialBytes + ", " + maxBytes);
+        }
+        return new BufferSizing(initialBytes, maxBytes);
+    }
+
+    @Override
+    public String toString() {
+        return this == DEFAULT ? "DEFAULT"
+                : initialSize == maxSize ? "fixed(" + initialSize + ")"
+                : "adaptive(" + initialSize + ", " + maxSize + ")";
+    }
+}
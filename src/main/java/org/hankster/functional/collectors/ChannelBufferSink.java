@@ -0,0 +1,44 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link BufferSink} that writes each full buffer to a {@link WritableByteChannel} and hands the same buffer back to
+ * be reused.  With a direct buffer and a {@link java.nio.channels.FileChannel}, the bytes go from the buffer to the
+ * file without being copied again.
+ */
+final class ChannelBufferSink implements BufferSink {
+    private final WritableByteChannel channel;
+
+    ChannelBufferSink(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public ByteBuffer drain(ByteBuffer full) throws IOException {
+        write(full);
+        return full;
+    }
+
+    @Override
+    public void finish(ByteBuffer last) throws IOException {
+        write(last);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // casts to Buffer so this still runs on Java 8 when built with a newer javac
+    private void write(ByteBuffer bb) throws IOException {
+        ((Buffer) bb).flip();
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+        ((Buffer) bb).clear();
+    }
+}
@@ -0,0 +1,169 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Collector} that writes {@link Stream} contents to a file as lines, like {@link FileCollector}, but that
+ * encodes each line straight into one large, reusable, direct {@link ByteBuffer} and writes the buffer with
+ * {@link FileChannel#write} when it fills.  {@link FileCollector} goes through a BufferedWriter, an OutputStreamWriter
+ * and its StreamEncoder, each with its own lock and its own small buffer.  For UTF-8, US-ASCII and ISO-8859-1, the
+ * chars are encoded by hand with no intermediate char[] at all; other character sets go through a
+ * {@link java.nio.charset.CharsetEncoder}.
+ * <p>
+ * Like {@link FileCollector}, every thread shares the same buffer, so this is meant for sequential streams.
+ */
+public class ChannelFileCollector implements Collector<String, ChannelFileCollector, Path>, Closeable {
+
+    /** the default size of the direct buffer lines are encoded into */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    /** the smallest buffer size allowed */
+    public static final int MIN_BUFFER_SIZE = 1 << 10;
+
+    Path path;
+    ChannelBufferSink sink = null;
+    LineEncoder encoder = null;
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified file.  The
+     * file is closed upon completion.  If it does not complete, (if, for instance, a RuntimeException is thrown),
+     * you will have to call close() on the collector.  The file is created even if the upstream is empty
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public ChannelFileCollector(Path path, Charset cs, OpenOption... options) {
+        this(path, cs, DEFAULT_BUFFER_SIZE, options);
+    }
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified file,
+     * encoding into a direct buffer of the given size.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param bufferSize the size of the buffer, in bytes.  Must be at least {@link #MIN_BUFFER_SIZE}.
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public ChannelFileCollector(Path path, Charset cs, int bufferSize, OpenOption... options) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("bufferSize must be at least " + MIN_BUFFER_SIZE + ": " + bufferSize);
+        }
+        try {
+            this.path = path;
+            this.sink = new ChannelBufferSink(FileChannel.open(path, FileOptions.forWriting(options)));
+            this.encoder = new LineEncoder(cs, System.lineSeparator(), sink, ByteBuffer.allocateDirect(bufferSize));
+        } catch (IOException e) {
+            closeAndThrow(e);
+        }
+    }
+
+    @Override
+    public Supplier<ChannelFileCollector> supplier() {
+        return () -> this;
+    }
+
+    @Override
+    public BiConsumer<ChannelFileCollector, String> accumulator() {
+        return (collector, s) -> {
+            try {
+                encoder.writeLine(s);
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    /**
+     * An accumulator for collectors built on this one, that appends each element to a reusable StringBuilder and writes
+     * that as a line, so there is no String per element.
+     * @param appender appends an element to the StringBuilder, without a line separator
+     * @param <T> the type of elements
+     * @return an accumulator
+     */
+    <T> BiConsumer<ChannelFileCollector, T> appending(BiConsumer<? super T, StringBuilder> appender) {
+        StringBuilder line = new StringBuilder();
+        return (collector, t) -> {
+            try {
+                line.setLength(0);
+                appender.accept(t, line);
+                encoder.writeLine(line);
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    /**
+     * Writes a line right away, like a header, before anything is accumulated.
+     * @param line the line to write
+     */
+    void writeLine(String line) {
+        try {
+            encoder.writeLine(line);
+        } catch (IOException e) {
+            closeAndThrow(e);
+        }
+    }
+
+    // supplier will always return the single instance, so combining is simple--just pick one and return it
+    @Override
+    public BinaryOperator<ChannelFileCollector> combiner() {
+        return (c1, c2) -> c1;
+    }
+
+    @Override
+    public Function<ChannelFileCollector, Path> finisher() {
+        return collector -> {
+            try {
+                encoder.finish();
+                close();
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+            return path;
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.noneOf(Characteristics.class);
+    }
+
+    /**
+     * Closes the file.  Lines still in the buffer are not written.
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try (ChannelBufferSink sinkRef = sink) {
+
+        } finally {
+            sink = null;
+            encoder = null;
+        }
+    }
+
+    private void closeAndThrow(IOException e) {
+        try {
+            close();
+        } catch (IOException e2){
+            e.addSuppressed(e2);
+        }
+        throw new UncheckedIOException(e);
+    }
+}
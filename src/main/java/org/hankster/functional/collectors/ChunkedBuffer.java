@@ -0,0 +1,466 @@
+package org.hankster.functional.collectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A growable buffer that, like the one behind {@link java.util.stream.IntStream.Builder}, keeps its elements in a list
+ * of chunks instead of one array, so growing it never copies what is already there.  Each chunk is twice as big as the
+ * one before, up to {@link #MAX_CHUNK_SIZE}.  The chunks are linked, so appending another buffer just links its chunks
+ * after this one's, in constant time, and a parallel collection costs no more copying than a sequential one.  A chunk
+ * may be left partly full by an append.  The buffer's spliterator knows its exact size and splits its range of
+ * elements in half, so a parallel stream over it is balanced no matter how the chunks fall.  Not thread safe.
+ * @param <A> the array type of the chunks
+ */
+abstract class ChunkedBuffer<A> {
+    static final int FIRST_CHUNK_SIZE = 16;
+    static final int MAX_CHUNK_SIZE = 1 << 16;
+
+    Chunk<A> head = null;
+    Chunk<A> tail = null;
+    int chunkCount = 0;
+    long count = 0;
+    private int nextChunkSize = FIRST_CHUNK_SIZE;
+
+    abstract A newChunk(int size);
+
+    abstract int length(A chunk);
+
+    /**
+     * Makes room for one more element.
+     * @return the index in the tail chunk's array to put the element at
+     */
+    final int slot() {
+        if (tail == null || tail.size == length(tail.array)) {
+            Chunk<A> chunk = new Chunk<>(newChunk(nextChunkSize));
+            if (tail == null) {
+                head = chunk;
+            } else {
+                tail.next = chunk;
+            }
+            tail = chunk;
+            chunkCount++;
+            nextChunkSize = Math.min(MAX_CHUNK_SIZE, nextChunkSize << 1);
+        }
+        count++;
+        return tail.size++;
+    }
+
+    /**
+     * Appends the elements of another buffer, which must not be used afterwards, by linking its chunks after this
+     * buffer's.
+     * @param right the buffer whose elements go after this one's
+     */
+    final void append(ChunkedBuffer<A> right) {
+        if (right.count == 0) {
+            return;
+        }
+        if (tail == null) {
+            head = right.head;
+        } else {
+            tail.next = right.head;
+        }
+        tail = right.tail;
+        chunkCount += right.chunkCount;
+        count += right.count;
+        nextChunkSize = Math.max(nextChunkSize, right.nextChunkSize);
+    }
+
+    // the chunks' arrays, in order
+    final Object[] arrays() {
+        Object[] arrays = new Object[chunkCount];
+        int i = 0;
+        for (Chunk<A> c = head; c != null; c = c.next) {
+            arrays[i++] = c.array;
+        }
+        return arrays;
+    }
+
+    // the offset of the first element of each chunk, followed by the total count
+    final long[] starts() {
+        long[] starts = new long[chunkCount + 1];
+        int i = 0;
+        long start = 0;
+        for (Chunk<A> c = head; c != null; c = c.next) {
+            starts[i++] = start;
+            start += c.size;
+        }
+        starts[i] = start;
+        return starts;
+    }
+
+    static final class Chunk<A> {
+        final A array;
+        int size = 0;               // the number of elements in the array
+        Chunk<A> next = null;
+
+        Chunk(A array) {
+            this.array = array;
+        }
+    }
+
+    /**
+     * A buffer of objects, which is also the {@link Stream.Builder} that {@link OtherCollectors#toStream()} collects
+     * into, and what {@link ToListCollectors#toListInParallel()} collects into before copying to a list.
+     * @param <T> the type of elements
+     */
+    static final class OfRef<T> extends ChunkedBuffer<Object[]> implements Stream.Builder<T> {
+        private boolean built = false;
+
+        @Override
+        public void accept(T t) {
+            if (built) {
+                throw new IllegalStateException("already built");
+            }
+            int i = slot();
+            tail.array[i] = t;
+        }
+
+        @Override
+        public Stream<T> build() {
+            if (built) {
+                throw new IllegalStateException("already built");
+            }
+            built = true;
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        Spliterator<T> spliterator() {
+            return new RefChunkSpliterator<>(arrays(), starts(), 0, count);
+        }
+
+        // copies the elements into an array of exactly the right size
+        Object[] toArray() {
+            Object[] array = new Object[Math.toIntExact(count)];
+            int offset = 0;
+            for (Chunk<Object[]> c = head; c != null; c = c.next) {
+                System.arraycopy(c.array, 0, array, offset, c.size);
+                offset += c.size;
+            }
+            return array;
+        }
+
+        // copies the elements, once, into an ArrayList of exactly the right size
+        @SuppressWarnings("unchecked")
+        ArrayList<T> toArrayList() {
+            ArrayList<T> list = new ArrayList<>(Math.toIntExact(count));
+            for (Chunk<Object[]> c = head; c != null; c = c.next) {
+                Object[] a = c.array;
+                for (int i = 0, n = c.size; i < n; i++) {
+                    list.add((T) a[i]);
+                }
+            }
+            return list;
+        }
+
+        @Override
+        Object[] newChunk(int size) {
+            return new Object[size];
+        }
+
+        @Override
+        int length(Object[] chunk) {
+            return chunk.length;
+        }
+    }
+
+    static final class OfInt extends ChunkedBuffer<int[]> {
+
+        void accept(int value) {
+            int i = slot();
+            tail.array[i] = value;
+        }
+
+        Spliterator.OfInt spliterator() {
+            return new IntChunkSpliterator(arrays(), starts(), 0, count);
+        }
+
+        @Override
+        int[] newChunk(int size) {
+            return new int[size];
+        }
+
+        @Override
+        int length(int[] chunk) {
+            return chunk.length;
+        }
+    }
+
+    static final class OfLong extends ChunkedBuffer<long[]> {
+
+        void accept(long value) {
+            int i = slot();
+            tail.array[i] = value;
+        }
+
+        Spliterator.OfLong spliterator() {
+            return new LongChunkSpliterator(arrays(), starts(), 0, count);
+        }
+
+        @Override
+        long[] newChunk(int size) {
+            return new long[size];
+        }
+
+        @Override
+        int length(long[] chunk) {
+            return chunk.length;
+        }
+    }
+
+    static final class OfDouble extends ChunkedBuffer<double[]> {
+
+        void accept(double value) {
+            int i = slot();
+            tail.array[i] = value;
+        }
+
+        Spliterator.OfDouble spliterator() {
+            return new DoubleChunkSpliterator(arrays(), starts(), 0, count);
+        }
+
+        @Override
+        double[] newChunk(int size) {
+            return new double[size];
+        }
+
+        @Override
+        int length(double[] chunk) {
+            return chunk.length;
+        }
+    }
+
+    /**
+     * The part of a spliterator over a buffer's chunks that doesn't depend on the element type: a range of element
+     * offsets, and the chunk the next element is in.  starts holds the offset of each chunk's first element, followed
+     * by the total count.
+     * @param <S> the type of spliterator split off
+     */
+    abstract static class ChunkSpliterator<S> {
+        final Object[] chunks;
+        final long[] starts;
+        final long end;
+        long position;
+        int chunk;
+
+        ChunkSpliterator(Object[] chunks, long[] starts, long position, long end) {
+            this.chunks = chunks;
+            this.starts = starts;
+            this.position = position;
+            this.end = end;
+            this.chunk = locate(position);
+        }
+
+        abstract S create(long from, long to);
+
+        public S trySplit() {
+            long n = end - position;
+            if (n < 2) {
+                return null;
+            }
+            long mid = position + (n >>> 1);
+            S prefix = create(position, mid);
+            position = mid;
+            chunk = locate(mid);
+            return prefix;
+        }
+
+        public long estimateSize() {
+            return end - position;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+        }
+
+        // the index of the chunk that holds the element at offset
+        private int locate(long offset) {
+            int i = Arrays.binarySearch(starts, 0, chunks.length, offset);
+            return i >= 0 ? i : -i - 2;
+        }
+    }
+
+    static final class RefChunkSpliterator<T> extends ChunkSpliterator<Spliterator<T>> implements Spliterator<T> {
+
+        RefChunkSpliterator(Object[] chunks, long[] starts, long position, long end) {
+            super(chunks, starts, position, end);
+        }
+
+        @Override
+        RefChunkSpliterator<T> create(long from, long to) {
+            return new RefChunkSpliterator<>(chunks, starts, from, to);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (position >= end) {
+                return false;
+            }
+            Object[] a = (Object[]) chunks[chunk];
+            int i = (int) (position++ - starts[chunk]);
+            if (position == starts[chunk + 1]) {
+                chunk++;
+            }
+            action.accept((T) a[i]);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (position < end) {
+                Object[] a = (Object[]) chunks[chunk];
+                int from = (int) (position - starts[chunk]);
+                int to = (int) (Math.min(starts[chunk + 1], end) - starts[chunk]);
+                position += to - from;
+                chunk++;
+                for (int i = from; i < to; i++) {
+                    action.accept((T) a[i]);
+                }
+            }
+        }
+    }
+
+    static final class IntChunkSpliterator extends ChunkSpliterator<Spliterator.OfInt> implements Spliterator.OfInt {
+
+        IntChunkSpliterator(Object[] chunks, long[] starts, long position, long end) {
+            super(chunks, starts, position, end);
+        }
+
+        @Override
+        IntChunkSpliterator create(long from, long to) {
+            return new IntChunkSpliterator(chunks, starts, from, to);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (position >= end) {
+                return false;
+            }
+            int[] a = (int[]) chunks[chunk];
+            int i = (int) (position++ - starts[chunk]);
+            if (position == starts[chunk + 1]) {
+                chunk++;
+            }
+            action.accept(a[i]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            while (position < end) {
+                int[] a = (int[]) chunks[chunk];
+                int from = (int) (position - starts[chunk]);
+                int to = (int) (Math.min(starts[chunk + 1], end) - starts[chunk]);
+                position += to - from;
+                chunk++;
+                for (int i = from; i < to; i++) {
+                    action.accept(a[i]);
+                }
+            }
+        }
+
+        @Override
+        public int characteristics() {
+            return super.characteristics() | NONNULL;
+        }
+    }
+
+    static final class LongChunkSpliterator extends ChunkSpliterator<Spliterator.OfLong> implements Spliterator.OfLong {
+
+        LongChunkSpliterator(Object[] chunks, long[] starts, long position, long end) {
+            super(chunks, starts, position, end);
+        }
+
+        @Override
+        LongChunkSpliterator create(long from, long to) {
+            return new LongChunkSpliterator(chunks, starts, from, to);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (position >= end) {
+                return false;
+            }
+            long[] a = (long[]) chunks[chunk];
+            int i = (int) (position++ - starts[chunk]);
+            if (position == starts[chunk + 1]) {
+                chunk++;
+            }
+            action.accept(a[i]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            while (position < end) {
+                long[] a = (long[]) chunks[chunk];
+                int from = (int) (position - starts[chunk]);
+                int to = (int) (Math.min(starts[chunk + 1], end) - starts[chunk]);
+                position += to - from;
+                chunk++;
+                for (int i = from; i < to; i++) {
+                    action.accept(a[i]);
+                }
+            }
+        }
+
+        @Override
+        public int characteristics() {
+            return super.characteristics() | NONNULL;
+        }
+    }
+
+    static final class DoubleChunkSpliterator extends ChunkSpliterator<Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+        DoubleChunkSpliterator(Object[] chunks, long[] starts, long position, long end) {
+            super(chunks, starts, position, end);
+        }
+
+        @Override
+        DoubleChunkSpliterator create(long from, long to) {
+            return new DoubleChunkSpliterator(chunks, starts, from, to);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (position >= end) {
+                return false;
+            }
+            double[] a = (double[]) chunks[chunk];
+            int i = (int) (position++ - starts[chunk]);
+            if (position == starts[chunk + 1]) {
+                chunk++;
+            }
+            action.accept(a[i]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            while (position < end) {
+                double[] a = (double[]) chunks[chunk];
+                int from = (int) (position - starts[chunk]);
+                int to = (int) (Math.min(starts[chunk + 1], end) - starts[chunk]);
+                position += to - from;
+                chunk++;
+                for (int i = from; i < to; i++) {
+                    action.accept(a[i]);
+                }
+            }
+        }
+
+        @Override
+        public int characteristics() {
+            return super.characteristics() | NONNULL;
+        }
+    }
+}
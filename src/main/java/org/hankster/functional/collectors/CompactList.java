@@ -0,0 +1,87 @@
+package org.hankster.functional.collectors;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The unmodifiable lists that {@link ToListCollectors#toImmutableList()} returns.  None of them has any spare capacity:
+ * the empty list is shared, a list of one element is {@link Collections#singletonList}, a list of two keeps them in
+ * fields rather than an array, and any longer list wraps an array of exactly its size.
+ */
+final class CompactList {
+
+    private CompactList() {}
+
+    /**
+     * @param elements the elements of the list, which the list takes ownership of, and which must not be changed
+     *                 afterwards
+     * @param <T> the type of elements
+     * @return an unmodifiable list of the elements
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> of(Object[] elements) {
+        switch (elements.length) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.singletonList((T) elements[0]);
+            case 2:
+                return new OfTwo<>((T) elements[0], (T) elements[1]);
+            default:
+                return new OfArray<>(elements);
+        }
+    }
+
+    private static final class OfTwo<T> extends AbstractList<T> implements RandomAccess {
+        private final T first;
+        private final T second;
+
+        OfTwo(T first, T second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public T get(int index) {
+            switch (index) {
+                case 0:
+                    return first;
+                case 1:
+                    return second;
+                default:
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: 2");
+            }
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+    }
+
+    private static final class OfArray<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] elements;
+
+        OfArray(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return elements.clone();
+        }
+    }
+}
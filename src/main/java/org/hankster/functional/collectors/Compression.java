@@ -0,0 +1,20 @@
+package org.hankster.functional.collectors;
+
+/**
+ * How a {@link FileCollector} compresses the file it writes.
+ */
+public enum Compression {
+
+    /** no compression */
+    NONE,
+
+    /** gzip, compressed on the accumulating thread by a {@link java.util.zip.GZIPOutputStream} */
+    GZIP,
+
+    /**
+     * gzip, compressed pigz-style: the output is cut into blocks that are deflated independently on the common
+     * fork-join pool, each primed with the last 32K of the block before it, and concatenated in order into a single gzip
+     * member.  Any gzip reader can read it, and compression uses all cores instead of being the bottleneck.
+     */
+    PARALLEL_GZIP
+}
@@ -0,0 +1,68 @@
+package org.hankster.functional.collectors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * The {@link Collector} returned by {@link OtherCollectors#toCsvFile} and {@link OtherCollectors#toCsvFileInParallel}:
+ * a {@link ChannelFileCollector} or a {@link ParallelFileCollector} that formats each element as a CSV record.  The
+ * file is closed upon completion.  If it does not complete, (if, for instance, a RuntimeException is thrown by an
+ * extractor or the upstream), you will have to call close() on the collector, to close the file and delete any temp
+ * files.
+ * @param <T> the type of elements written
+ * @param <A> the accumulation type of the collector beneath
+ */
+public final class CsvFileCollector<T, A> implements Collector<T, A, Path>, Closeable {
+    private final Collector<T, A, Path> collector;
+    private final Closeable target;
+
+    /**
+     * @param collector formats and writes the records
+     * @param target the file collector beneath, which close() closes
+     */
+    CsvFileCollector(Collector<T, A, Path> collector, Closeable target) {
+        this.collector = collector;
+        this.target = target;
+    }
+
+    @Override
+    public Supplier<A> supplier() {
+        return collector.supplier();
+    }
+
+    @Override
+    public BiConsumer<A, T> accumulator() {
+        return collector.accumulator();
+    }
+
+    @Override
+    public BinaryOperator<A> combiner() {
+        return collector.combiner();
+    }
+
+    @Override
+    public Function<A, Path> finisher() {
+        return collector.finisher();
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return collector.characteristics();
+    }
+
+    /**
+     * Closes the file, and deletes any temp files, if the collector did not complete.
+     * @throws IOException if a file could not be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        target.close();
+    }
+}
@@ -0,0 +1,165 @@
+package org.hankster.functional.collectors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Describes the columns of a CSV or TSV file, for {@link OtherCollectors#toCsvFile} and
+ * {@link OtherCollectors#toCsvFileInParallel}.  Each column has a field extractor, and each record is appended
+ * directly to the collector's char buffer, quoted and escaped as RFC 4180 describes: a field that contains the
+ * delimiter, a double quote, a CR or a LF is wrapped in double quotes, and double quotes inside it are doubled.  No
+ * intermediate Strings are created for fields that are CharSequences, Characters, Booleans, or integral or floating
+ * point Numbers; any other field is converted with toString().  A null field is written as an empty field.
+ * <pre>
+ * CsvFormat&lt;Person&gt; format = CsvFormat.&lt;Person&gt;csv()
+ *         .column("name", Person::getName)
+ *         .column("age", Person::getAge)
+ *         .withHeader();
+ * </pre>
+ * @param <T> the type of objects written as records
+ */
+public final class CsvFormat<T> {
+    private final char delimiter;
+    private final List<String> names = new ArrayList<>();
+    private final List<Function<? super T, ?>> extractors = new ArrayList<>();
+    private boolean header = false;
+
+    private CsvFormat(char delimiter) {
+        if (Character.isLetterOrDigit(delimiter) || "\"\r\n.-+".indexOf(delimiter) >= 0) {
+            throw new IllegalArgumentException("invalid delimiter '" + delimiter + "'");
+        }
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * @param <T> the type of objects written as records
+     * @return a format with comma-separated fields and no columns yet
+     */
+    public static <T> CsvFormat<T> csv() {
+        return new CsvFormat<>(',');
+    }
+
+    /**
+     * @param <T> the type of objects written as records
+     * @return a format with tab-separated fields, quoted the same way as CSV, and no columns yet
+     */
+    public static <T> CsvFormat<T> tsv() {
+        return new CsvFormat<>('\t');
+    }
+
+    /**
+     * @param delimiter the char that separates fields, which may not be a letter, a digit, a double quote, a CR, a LF,
+     *                  or any other char that can appear in a number
+     * @param <T> the type of objects written as records
+     * @return a format with fields separated by the given delimiter and no columns yet
+     */
+    public static <T> CsvFormat<T> delimitedBy(char delimiter) {
+        return new CsvFormat<>(delimiter);
+    }
+
+    /**
+     * Adds a column.
+     * @param name the column's name, used in the header
+     * @param extractor returns the column's field from each object
+     * @return this format
+     */
+    public CsvFormat<T> column(String name, Function<? super T, ?> extractor) {
+        names.add(name);
+        extractors.add(extractor);
+        return this;
+    }
+
+    /**
+     * Makes the first line of the file a header with the names of the columns.
+     * @return this format
+     */
+    public CsvFormat<T> withHeader() {
+        header = true;
+        return this;
+    }
+
+    /**
+     * @return the header line, or null if this format has no header
+     */
+    String header() {
+        if (!header) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                sb.append(delimiter);
+            }
+            appendField(names.get(i), sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends a record, without a line separator.
+     * @param t the object to write
+     * @param sb where to write it
+     */
+    void appendRecord(T t, StringBuilder sb) {
+        for (int i = 0; i < extractors.size(); i++) {
+            if (i > 0) {
+                sb.append(delimiter);
+            }
+            appendField(extractors.get(i).apply(t), sb);
+        }
+    }
+
+    private void appendField(Object field, StringBuilder sb) {
+        if (field == null) {
+            return;
+        }
+        if (field instanceof Long || field instanceof Integer || field instanceof Short || field instanceof Byte) {
+            sb.append(((Number) field).longValue());
+        } else if (field instanceof Double) {
+            sb.append(((Double) field).doubleValue());
+        } else if (field instanceof Float) {
+            sb.append(((Float) field).floatValue());
+        } else if (field instanceof Boolean) {
+            sb.append(((Boolean) field).booleanValue());
+        } else if (field instanceof Character) {
+            char c = (Character) field;
+            if (needsQuotes(c)) {
+                sb.append('"').append(c);
+                if (c == '"') {
+                    sb.append('"');
+                }
+                sb.append('"');
+            } else {
+                sb.append(c);
+            }
+        } else {
+            appendEscaped(field instanceof CharSequence ? (CharSequence) field : field.toString(), sb);
+        }
+    }
+
+    private void appendEscaped(CharSequence s, StringBuilder sb) {
+        int len = s.length();
+        int i = 0;
+        while (i < len && !needsQuotes(s.charAt(i))) {
+            i++;
+        }
+        if (i == len) {
+            sb.append(s);
+            return;
+        }
+        sb.append('"').append(s, 0, i);
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private boolean needsQuotes(char c) {
+        return c == delimiter || c == '"' || c == '\r' || c == '\n';
+    }
+}
@@ -0,0 +1,183 @@
+package org.hankster.functional.collectors;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.stream.DoubleStream;
+
+/**
+ * A growable list of doubles, backed by a double[] the way {@link java.util.ArrayList} is backed by an Object[], so each
+ * element takes 8 bytes instead of a reference to a boxed {@link Double}.  It is a full {@code List<Double>}, but
+ * the methods that take and return doubles, like {@link #addDouble(double)} and {@link #getDouble(int)}, never box.  To collect an
+ * {@link DoubleStream} into one without boxing:
+ * <pre>
+ * DoubleArrayList list = doubleStream.collect(DoubleArrayList::new, DoubleArrayList::addDouble, DoubleArrayList::addAll);
+ * </pre>
+ * For a stream of objects, see {@link ToListCollectors#toDoubleList(java.util.function.ToDoubleFunction)}.  Not thread safe.
+ */
+public class DoubleArrayList extends AbstractList<Double> implements RandomAccess {
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private double[] elements;
+    private int size = 0;
+
+    /**
+     * Creates an empty list with room for 10 elements.
+     */
+    public DoubleArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list.
+     * @param initialCapacity the number of elements the list can hold before it reallocates
+     */
+    public DoubleArrayList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must not be negative: " + initialCapacity);
+        }
+        this.elements = new double[initialCapacity];
+    }
+
+    /**
+     * Appends a double.
+     * @param value the double to add
+     */
+    public void addDouble(double value) {
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+        modCount++;
+    }
+
+    /**
+     * Appends all the doubles in another list.
+     * @param other the list to add
+     */
+    public void addAll(DoubleArrayList other) {
+        int n = other.size;
+        if (size + n > elements.length) {
+            grow(size + n);
+        }
+        System.arraycopy(other.elements, 0, elements, size, n);
+        size += n;
+        modCount++;
+    }
+
+    /**
+     * @param index the index of the double to return
+     * @return the double at the index
+     */
+    public double getDouble(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * @param index the index of the double to replace
+     * @param value the new double
+     * @return the double that was at the index
+     */
+    public double setDouble(int index, double value) {
+        checkIndex(index);
+        double old = elements[index];
+        elements[index] = value;
+        return old;
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    @Override
+    public Double set(int index, Double value) {
+        return setDouble(index, value);
+    }
+
+    @Override
+    public void add(int index, Double value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        double v = value;
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = v;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Double remove(int index) {
+        checkIndex(index);
+        double old = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes sure the list can hold at least minCapacity elements without reallocating.
+     * @param minCapacity the capacity needed
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Shrinks the backing array to the size of the list.
+     */
+    public void trimToSize() {
+        if (size < elements.length) {
+            elements = Arrays.copyOf(elements, size);
+        }
+    }
+
+    /**
+     * @return a new array holding the doubles in the list
+     */
+    public double[] toDoubleArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * @return a stream of the doubles in the list, without boxing
+     */
+    public DoubleStream doubleStream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    // grows by half again, like ArrayList, or to minCapacity if that is more
+    private void grow(int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("list too large: " + Integer.toUnsignedString(minCapacity));
+        }
+        long capacity = Math.max(minCapacity, Math.max(DEFAULT_CAPACITY, elements.length + (elements.length >> 1)));
+        elements = Arrays.copyOf(elements, (int) Math.min(capacity, MAX_ARRAY_SIZE));
+    }
+}
@@ -1,28 +1,33 @@
 package org.hankster.functional.collectors;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
-import java.util.EnumSet;
-import java.util.Set;
-import java.util.function.BiConsumer;
-import java.util.function.BinaryOperator;
-import java.util.function.Function;
-import java.util.function.Supplier;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collector;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * A {@link Collector} that writes {@link Stream} contents to a file, closing it when the stream is exhausted.
+ * Every thread shares the same writer, so this is meant for sequential streams; lines written from a parallel stream can
+ * interleave and end up out of order.  Use {@link ParallelFileCollector} for parallel streams.
  */
 
-public class FileCollector implements Collector<String, BufferedWriter, Path>, Closeable{
+public class FileCollector extends WriterCollector<Path> {
+    static final int GZIP_BUFFER_SIZE = 64 << 10;
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
     Path path;
-    OutputStream out = null;
-    OutputStreamWriter osWriter = null;
-    BufferedWriter writer = null;
+    Path temp = null;                   // the file being written by a durable collector, until it is moved to path
+    FsyncPolicy fsync = FsyncPolicy.NONE;
 
     /**
      * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified file.  The
@@ -34,79 +39,176 @@ public class FileCollector implements Collector<String, BufferedWriter, Path>, C
      * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
      */
     public FileCollector(Path path, Charset cs, OpenOption... options) {
-        try {
-            this.path = path;
-            this.out = Files.newOutputStream(path, options);
-            this.osWriter = new OutputStreamWriter(out, cs.newEncoder());
-            this.writer = new BufferedWriter(osWriter);
-        } catch (IOException e) {
-            closeAndThrow(e);
-        }
+        this(path, cs, Compression.NONE, options);
     }
 
-    @Override
-    public Supplier<BufferedWriter> supplier() {
-        return () -> writer;
+    /**
+     * Creates a Collector like {@link #FileCollector(Path, Charset, OpenOption...)}, that compresses the file as it
+     * writes it, so there is no need for a second pass to compress it.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param compression how to compress the file
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public FileCollector(Path path, Charset cs, Compression compression, OpenOption... options) {
+        this(path, cs, compression, BufferSizing.DEFAULT, options);
     }
 
-    @Override
-    public BiConsumer<BufferedWriter, String> accumulator() {
-        return (wr, s) -> {
-            try {
-                wr.write(s);
-                wr.newLine();
-            } catch (IOException e) {
-                closeAndThrow(e);
-            }
-        };
+    /**
+     * Creates a Collector like {@link #FileCollector(Path, Charset, OpenOption...)}, that collects the encoded bytes
+     * in a buffer of the given size before writing them to the file.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param sizing the size of the buffer, which may grow as the file is written
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public FileCollector(Path path, Charset cs, BufferSizing sizing, OpenOption... options) {
+        this(path, cs, Compression.NONE, sizing, options);
     }
 
-    // supplier will always return the single instance, so combining is simple--just pick one and return it
-    @Override
-    public BinaryOperator<BufferedWriter> combiner() {
-        return (bw1, bw2) -> bw1;
+    /**
+     * Creates a Collector like {@link #FileCollector(Path, Charset, Compression, OpenOption...)}, that collects the
+     * encoded bytes in a buffer of the given size before compressing them and writing them to the file.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param compression how to compress the file
+     * @param sizing the size of the buffer, which may grow as the file is written
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public FileCollector(Path path, Charset cs, Compression compression, BufferSizing sizing, OpenOption... options) {
+        try {
+            this.path = path;
+            switch (compression) {
+                case NONE:
+                    this.out = Files.newOutputStream(path, options);
+                    break;
+                case GZIP:
+                    this.out = Files.newOutputStream(path, options);
+                    this.out = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+                    break;
+                case PARALLEL_GZIP:
+                    FileChannel channel = FileChannel.open(path, FileOptions.forWriting(options));
+                    ParallelGzipSink sink;
+                    try {
+                        sink = new ParallelGzipSink(channel, Deflater.DEFAULT_COMPRESSION, ParallelGzipSink.DEFAULT_BLOCK_SIZE,
+                                ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism() + 1);
+                    } catch (IOException | RuntimeException e) {
+                        channel.close();
+                        throw e;
+                    }
+                    this.out = new SinkOutputStream(sink, sink.first());
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown compression " + compression);
+            }
+            openWriters(cs, sizing);
+        } catch (IOException e) {
+            closeAndThrow(e);
+        }
     }
 
-    @Override
-    public Function<BufferedWriter, Path> finisher() {
-        return bw -> {
+    /**
+     * Creates a Collector like {@link #FileCollector(Path, Charset, OpenOption...)}, that writes asynchronously.  The
+     * accumulator encodes lines into one of bufferCount buffers while a dedicated writer thread writes the others to
+     * the file, so a CPU-bound upstream doesn't stall while the disk catches up.  When every buffer is waiting to be
+     * written, the accumulator blocks until the writer thread hands one back.  The finisher waits for the last buffer
+     * to be written.  An IOException on the writer thread is thrown as an UncheckedIOException from the accumulator
+     * or the finisher.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param bufferCount the number of buffers, at least 2.  2 is double buffering.
+     * @param bufferSize the size of each buffer, in bytes, at least 1
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public FileCollector(Path path, Charset cs, int bufferCount, int bufferSize, OpenOption... options) {
+        try {
+            this.path = path;
+            FileChannel channel = FileChannel.open(path, FileOptions.forWriting(options));
+            AsyncBufferSink sink;
             try {
-                close();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
+                sink = new AsyncBufferSink(channel, bufferCount, bufferSize, "FileCollector writer for " + path);
+            } catch (RuntimeException e) {
+                channel.close();
+                throw e;
             }
-            return path;
-        };
+            this.out = new SinkOutputStream(sink, sink.first());
+            openWriters(cs, BufferSizing.DEFAULT);
+        } catch (IOException e) {
+            closeAndThrow(e);
+        }
     }
 
-    @Override
-    public Set<Characteristics> characteristics() {
-        return EnumSet.noneOf(Characteristics.class);
+    /**
+     * Creates a Collector like {@link #FileCollector(Path, Charset, OpenOption...)}, that writes durably: the lines are
+     * written to a temp file in the same directory, which is forced to the storage device as the policy says, then
+     * atomically moved to the target path in the finisher, replacing any existing file.  Readers never see a partly
+     * written file, and a crash leaves the old file, if any, in place.  If the collector does not complete, calling
+     * close() deletes the temp file.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param fsync when to force the temp file to the storage device
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public FileCollector(Path path, Charset cs, FsyncPolicy fsync) {
+        try {
+            this.path = path;
+            this.fsync = fsync;
+            Path dir = path.toAbsolutePath().getParent();
+            this.temp = FileOptions.createUniqueFile(dir, "." + path.getFileName(), ".tmp");
+            this.out = new ForcingOutputStream(FileChannel.open(temp, StandardOpenOption.WRITE), fsync);
+            openWriters(cs, BufferSizing.DEFAULT);
+        } catch (IOException e) {
+            closeAndThrow(e);
+        }
     }
 
+    /**
+     * {@inheritDoc}  For a durable collector that has not finished, this also deletes the temp file, leaving the
+     * target path untouched.
+     */
     @Override
     public void close() throws IOException {
-        // use try-with-resources to assure that all get closed
-        try(
-                OutputStream outRef = out;
-                BufferedWriter writerRef = writer;
-                OutputStreamWriter osWriterRef = osWriter;
-        ){
-
+        try {
+            closeWriters();
         } finally {
-            osWriter = null;
-            writer = null;
-            out = null;
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+                temp = null;
+            }
         }
     }
 
-    private void closeAndThrow(IOException e) {
-        try {
+    @Override
+    Path finish() throws IOException {
+        if (temp != null) {
+            closeWriters();
+            commit();
+        } else {
             close();
-        } catch (IOException e2){
-            e.addSuppressed(e2);
         }
-        throw new UncheckedIOException(e);
+        return path;
     }
 
+    // moves the finished temp file into place, then forces the directory so the move itself survives a crash
+    private void commit() throws IOException {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        temp = null;
+        if (fsync == FsyncPolicy.NONE || WINDOWS) {
+            return;
+        }
+        FileChannel dir;
+        try {
+            dir = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            // Windows, and some other file systems, can't open a directory; the move is as durable as it gets
+            return;
+        }
+        try (FileChannel d = dir) {
+            d.force(true);
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads files written by {@link OtherCollectors#toFile(Path, java.nio.file.OpenOption...)} and its relatives back as
+ * streams of lines.  Unlike {@link Files#lines(Path)}, whose spliterator splits off batches of lines that it has
+ * already read and decoded on one thread, the file is memory-mapped and the spliterator splits it at byte offsets,
+ * on line boundaries, so each fork-join leaf maps, scans and decodes only its own part of the file, and a parallel
+ * read-transform-write pipeline scales across cores end to end.
+ */
+public final class FileLines {
+
+    private FileLines() {}
+
+    /**
+     * Reads all lines from a file as a Stream, decoding them as UTF-8.
+     * @param path the file to read
+     * @return the lines from the file
+     * @throws IOException if the file could not be opened
+     * @see #lines(Path, Charset)
+     */
+    public static Stream<String> lines(Path path) throws IOException {
+        return lines(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads all lines from a file as a Stream.  A line ends with a line feed, or a carriage return followed by a line
+     * feed, or the end of the file.  The file stays open until the stream is closed, so use it in a try-with-resources
+     * statement.  Malformed or unmappable input is reported as an {@link UncheckedIOException} when the line is read.
+     * <p>
+     * The file is split on the byte value of a line feed, so the character set has to encode a line feed as that one
+     * byte, and never use that byte inside the encoding of any other character.  UTF-8, US-ASCII and the single-byte
+     * character sets qualify; UTF-16 and UTF-32 do not.  A character set that can only decode, like ISO-2022-CN,
+     * qualifies if its decoder reads the line feed byte as a line feed, and no byte as more than one char.  A single
+     * line can't be longer than 1 GB.
+     * @param path the file to read
+     * @param cs the character set to decode with
+     * @return the lines from the file
+     * @throws IOException if the file could not be opened
+     * @throws IllegalArgumentException if the character set can't be split on line feed bytes
+     */
+    public static Stream<String> lines(Path path, Charset cs) throws IOException {
+        if (!splittable(cs)) {
+            throw new IllegalArgumentException("can't split " + cs + " on line feed bytes");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            LineSpliterator spliterator = new LineSpliterator(channel, cs, 0, channel.size());
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        }
+    }
+
+    // whether the file can be split on line feed bytes.  A character set that can only decode has no encoder to ask.
+    private static boolean splittable(Charset cs) {
+        if (cs.equals(StandardCharsets.UTF_8)) {
+            return true;
+        }
+        if (cs.canEncode()) {
+            return cs.newEncoder().maxBytesPerChar() == 1 && Arrays.equals("\n".getBytes(cs), new byte[]{'\n'});
+        }
+        CharsetDecoder decoder = cs.newDecoder();
+        if (decoder.maxCharsPerByte() != 1) {
+            return false;
+        }
+        try {
+            return decoder.decode(ByteBuffer.wrap(new byte[]{'\n'})).toString().equals("\n");
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+}
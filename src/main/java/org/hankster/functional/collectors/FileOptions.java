@@ -0,0 +1,59 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Helpers for translating the {@link OpenOption}s passed to the file collectors into options for opening channels, and
+ * for creating the files they write.
+ */
+interface FileOptions {
+
+    /**
+     * Mirrors what {@link java.nio.file.Files#newOutputStream} does with its options, so collectors that open a
+     * {@link java.nio.channels.FileChannel} behave the same way as {@link FileCollector}: with no options, the file is
+     * created or truncated, and the file is always opened for writing.
+     * @param options 0 or more OpenOption values
+     * @return the set of options to open a channel with
+     */
+    static Set<OpenOption> forWriting(OpenOption... options) {
+        Set<OpenOption> set = new HashSet<>();
+        if (options.length == 0) {
+            set.add(StandardOpenOption.CREATE);
+            set.add(StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            set.addAll(Arrays.asList(options));
+        }
+        set.add(StandardOpenOption.WRITE);
+        return set;
+    }
+
+    /**
+     * Creates a new, empty file with a unique name, like {@link Files#createTempFile(Path, String, String)}, but with
+     * the same default permissions as any other new file, rather than readable only by its owner, since the file is
+     * going to be moved into place as a collector's output.
+     * @param dir the directory to create the file in
+     * @param prefix the start of the file's name
+     * @param suffix the end of the file's name
+     * @return the file
+     * @throws IOException if the file could not be created
+     */
+    static Path createUniqueFile(Path dir, String prefix, String suffix) throws IOException {
+        while (true) {
+            Path file = dir.resolve(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + suffix);
+            try {
+                return Files.createFile(file);
+            } catch (FileAlreadyExistsException e) {
+                // try another name
+            }
+        }
+    }
+}
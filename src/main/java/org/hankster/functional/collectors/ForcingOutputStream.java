@@ -0,0 +1,50 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An unbuffered {@link OutputStream} over a {@link FileChannel} that forces the channel as an {@link FsyncPolicy} says.
+ * Periodic forces only flush the file's data; the force on close also flushes its metadata.
+ */
+final class ForcingOutputStream extends OutputStream {
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private long unforced = 0;
+
+    ForcingOutputStream(FileChannel channel, FsyncPolicy policy) {
+        this.channel = channel;
+        this.policy = policy;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+        unforced += len;
+        if (unforced >= policy.interval) {
+            channel.force(false);
+            unforced = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            try (FileChannel channelRef = channel) {
+                if (policy.atEnd) {
+                    channel.force(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.hankster.functional.collectors;
+
+/**
+ * When a durable {@link FileCollector} forces what it has written to the storage device, trading throughput for the
+ * assurance that a completed file survives a crash.
+ */
+public final class FsyncPolicy {
+
+    /** never force; the file still appears atomically, but a crash can leave it empty or partly written */
+    public static final FsyncPolicy NONE = new FsyncPolicy(Long.MAX_VALUE, false);
+
+    /** force once, after the last line is written and before the file is moved into place */
+    public static final FsyncPolicy AT_END = new FsyncPolicy(Long.MAX_VALUE, true);
+
+    final long interval;
+    final boolean atEnd;
+
+    private FsyncPolicy(long interval, boolean atEnd) {
+        this.interval = interval;
+        this.atEnd = atEnd;
+    }
+
+    /**
+     * Forces every time at least the given number of bytes have been written since the last time, and at the end,
+     * which limits how much dirty data can pile up in the page cache.
+     * @param bytes the number of bytes written between forces
+     * @return a policy that forces periodically and at the end
+     */
+    public static FsyncPolicy everyBytes(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("bytes must be positive: " + bytes);
+        }
+        return new FsyncPolicy(bytes, true);
+    }
+
+    @Override
+    public String toString() {
+        return this == NONE ? "NONE" : interval == Long.MAX_VALUE ? "AT_END" : "everyBytes(" + interval + ")";
+    }
+}
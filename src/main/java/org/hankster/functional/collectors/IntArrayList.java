@@ -0,0 +1,183 @@
+package org.hankster.functional.collectors;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+
+/**
+ * A growable list of ints, backed by an int[] the way {@link java.util.ArrayList} is backed by an Object[], so each
+ * element takes 4 bytes instead of a reference to a boxed {@link Integer}.  It is a full {@code List<Integer>}, but
+ * the methods that take and return ints, like {@link #addInt(int)} and {@link #getInt(int)}, never box.  To collect an
+ * {@link IntStream} into one without boxing:
+ * <pre>
+ * IntArrayList list = intStream.collect(IntArrayList::new, IntArrayList::addInt, IntArrayList::addAll);
+ * </pre>
+ * For a stream of objects, see {@link ToListCollectors#toIntList(java.util.function.ToIntFunction)}.  Not thread safe.
+ */
+public class IntArrayList extends AbstractList<Integer> implements RandomAccess {
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private int[] elements;
+    private int size = 0;
+
+    /**
+     * Creates an empty list with room for 10 elements.
+     */
+    public IntArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list.
+     * @param initialCapacity the number of elements the list can hold before it reallocates
+     */
+    public IntArrayList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must not be negative: " + initialCapacity);
+        }
+        this.elements = new int[initialCapacity];
+    }
+
+    /**
+     * Appends an int.
+     * @param value the int to add
+     */
+    public void addInt(int value) {
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+        modCount++;
+    }
+
+    /**
+     * Appends all the ints in another list.
+     * @param other the list to add
+     */
+    public void addAll(IntArrayList other) {
+        int n = other.size;
+        if (size + n > elements.length) {
+            grow(size + n);
+        }
+        System.arraycopy(other.elements, 0, elements, size, n);
+        size += n;
+        modCount++;
+    }
+
+    /**
+     * @param index the index of the int to return
+     * @return the int at the index
+     */
+    public int getInt(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * @param index the index of the int to replace
+     * @param value the new int
+     * @return the int that was at the index
+     */
+    public int setInt(int index, int value) {
+        checkIndex(index);
+        int old = elements[index];
+        elements[index] = value;
+        return old;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public Integer set(int index, Integer value) {
+        return setInt(index, value);
+    }
+
+    @Override
+    public void add(int index, Integer value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int v = value;
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = v;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Integer remove(int index) {
+        checkIndex(index);
+        int old = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes sure the list can hold at least minCapacity elements without reallocating.
+     * @param minCapacity the capacity needed
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Shrinks the backing array to the size of the list.
+     */
+    public void trimToSize() {
+        if (size < elements.length) {
+            elements = Arrays.copyOf(elements, size);
+        }
+    }
+
+    /**
+     * @return a new array holding the ints in the list
+     */
+    public int[] toIntArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * @return a stream of the ints in the list, without boxing
+     */
+    public IntStream intStream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    // grows by half again, like ArrayList, or to minCapacity if that is more
+    private void grow(int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("list too large: " + Integer.toUnsignedString(minCapacity));
+        }
+        long capacity = Math.max(minCapacity, Math.max(DEFAULT_CAPACITY, elements.length + (elements.length >> 1)));
+        elements = Arrays.copyOf(elements, (int) Math.min(capacity, MAX_ARRAY_SIZE));
+    }
+}
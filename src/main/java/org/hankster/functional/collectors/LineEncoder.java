@@ -0,0 +1,166 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+
+/**
+ * Encodes lines straight into a {@link ByteBuffer}, handing the buffer to a {@link BufferSink} whenever it fills up,
+ * so there is no Writer (and no Writer lock) between the upstream strings and the bytes.  UTF-8, US-ASCII and
+ * ISO-8859-1 are encoded by hand, char by char from the String into the buffer, since {@link CharsetEncoder} has to
+ * wrap each String in a {@link CharBuffer} that it can only read one char at a time anyway.  Like the encoder returned
+ * by {@link Charset#newEncoder()}, malformed and unmappable input is reported as a {@link CharacterCodingException}.
+ * Not thread safe.
+ */
+final class LineEncoder {
+    private static final CharBuffer EMPTY = CharBuffer.allocate(0);
+
+    private final CharsetEncoder encoder;
+    private final String separator;
+    private final CharBuffer separatorBuffer;
+    private final BufferSink sink;
+    private final boolean utf8;
+    private final int singleByteLimit;          // one past the largest char a single-byte charset can encode, or 0
+    private ByteBuffer buffer;
+    private long drained = 0;                   // bytes in the buffers that have been handed to the sink
+
+    /**
+     * @param cs the character set to encode with
+     * @param separator the line separator written after each line
+     * @param sink where full buffers go
+     * @param buffer the first buffer to encode into, in write mode
+     */
+    LineEncoder(Charset cs, String separator, BufferSink sink, ByteBuffer buffer) {
+        this.encoder = cs.newEncoder();
+        this.separator = separator;
+        this.separatorBuffer = CharBuffer.wrap(separator);
+        this.sink = sink;
+        this.buffer = buffer;
+        this.utf8 = cs.equals(StandardCharsets.UTF_8);
+        this.singleByteLimit = cs.equals(StandardCharsets.US_ASCII) ? 0x80
+                : cs.equals(StandardCharsets.ISO_8859_1) ? 0x100
+                : 0;
+    }
+
+    void writeLine(CharSequence s) throws IOException {
+        if (utf8 || singleByteLimit != 0) {
+            put(s);
+            put(separator);
+        } else {
+            encode(CharBuffer.wrap(s), false);
+            ((Buffer) separatorBuffer).clear();     // cast to Buffer so this still runs on Java 8 when built with a newer javac
+            encode(separatorBuffer, false);
+        }
+    }
+
+    /**
+     * @return the number of bytes encoded so far, including those still in the buffer
+     */
+    long bytesEncoded() {
+        return drained + buffer.position();
+    }
+
+    /**
+     * Flushes the encoder and hands the last buffer to the sink.  Nothing may be written afterwards.
+     * @throws IOException if the sink could not write the bytes
+     */
+    void finish() throws IOException {
+        if (!utf8 && singleByteLimit == 0) {
+            encode(EMPTY, true);
+            for (CoderResult r = encoder.flush(buffer); !r.isUnderflow(); r = encoder.flush(buffer)) {
+                buffer = drain();
+            }
+        }
+        sink.finish(buffer);
+    }
+
+    private void encode(CharBuffer in, boolean endOfInput) throws IOException {
+        for (;;) {
+            CoderResult r = encoder.encode(in, buffer, endOfInput);
+            if (r.isUnderflow()) {
+                if (in.hasRemaining()) {
+                    // a line can't end with half of a surrogate pair, since the other half will never arrive
+                    CoderResult.malformedForLength(in.remaining()).throwException();
+                }
+                return;
+            }
+            if (r.isOverflow()) {
+                buffer = drain();
+            } else {
+                r.throwException();
+            }
+        }
+    }
+
+    // encodes as many chars at a time as are guaranteed to fit, so the inner loops don't have to check for room
+    private void put(CharSequence s) throws IOException {
+        int maxBytesPerChar = utf8 ? 3 : 1;     // a surrogate pair is 2 chars and 4 bytes, so 3 covers it
+        int len = s.length();
+        for (int i = 0; i < len; ) {
+            int n = Math.min(len - i, buffer.remaining() / maxBytesPerChar);
+            if (n < Math.min(2, len - i)) {
+                buffer = drain();
+                continue;
+            }
+            int end = i + n;
+            if (end < len && Character.isHighSurrogate(s.charAt(end - 1))) {
+                end--;                          // keep surrogate pairs together
+            }
+            i = utf8 ? putUtf8(s, i, end) : putSingleByte(s, i, end);
+        }
+    }
+
+    private int putSingleByte(CharSequence s, int from, int to) throws CharacterCodingException {
+        ByteBuffer bb = buffer;
+        int p = bb.position();
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= singleByteLimit) {
+                throw Character.isSurrogate(c) && !isPair(s, i, to) ? new MalformedInputException(1) : new UnmappableCharacterException(1);
+            }
+            bb.put(p++, (byte) c);
+        }
+        ((Buffer) bb).position(p);
+        return to;
+    }
+
+    private int putUtf8(CharSequence s, int from, int to) throws CharacterCodingException {
+        ByteBuffer bb = buffer;
+        int p = bb.position();
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bb.put(p++, (byte) c);
+            } else if (c < 0x800) {
+                bb.put(p++, (byte) (0xc0 | (c >> 6)));
+                bb.put(p++, (byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                if (!isPair(s, i, to)) {
+                    throw new MalformedInputException(1);
+                }
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                bb.put(p++, (byte) (0xf0 | (cp >> 18)));
+                bb.put(p++, (byte) (0x80 | ((cp >> 12) & 0x3f)));
+                bb.put(p++, (byte) (0x80 | ((cp >> 6) & 0x3f)));
+                bb.put(p++, (byte) (0x80 | (cp & 0x3f)));
+            } else {
+                bb.put(p++, (byte) (0xe0 | (c >> 12)));
+                bb.put(p++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                bb.put(p++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        ((Buffer) bb).position(p);
+        return to;
+    }
+
+    private ByteBuffer drain() throws IOException {
+        drained += buffer.position();
+        return sink.drain(buffer);
+    }
+
+    private static boolean isPair(CharSequence s, int i, int to) {
+        return Character.isHighSurrogate(s.charAt(i)) && i + 1 < to && Character.isLowSurrogate(s.charAt(i + 1));
+    }
+}
@@ -0,0 +1,176 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the lines in a range of bytes of a file, for {@link FileLines}.  The range always starts at
+ * the start of a line and ends at the end of one.  It splits by finding the first line feed after the middle of the
+ * part not yet traversed, and it is traversed by mapping the range a window at a time, each window ending at a line
+ * feed, so the windows of different spliterators never overlap, and nothing is shared but the channel.
+ */
+final class LineSpliterator implements Spliterator<String> {
+    /** the most bytes mapped at once, which is also the longest line that can be read */
+    static final int MAX_WINDOW = 1 << 30;
+
+    /** ranges smaller than this are not split, since the fork costs more than reading them */
+    static final long MIN_SPLIT = 64 << 10;
+
+    private static final int SCAN_SIZE = 8 << 10;
+
+    private final FileChannel channel;
+    private final Charset cs;
+    private final long end;
+    private long position;                      // the start of the next line to read
+    private MappedByteBuffer window = null;     // maps the bytes from windowStart up to the window's limit
+    private long windowStart;
+    private CharsetDecoder decoder = null;
+    private CharBuffer chars = null;
+
+    /**
+     * @param channel the file, open for reading
+     * @param cs the character set to decode with, which must encode a line feed as the single byte '\n'
+     * @param start the offset of the start of the first line
+     * @param end the offset just past the end of the last line
+     */
+    LineSpliterator(FileChannel channel, Charset cs, long start, long end) {
+        this.channel = channel;
+        this.cs = cs;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (position >= end) {
+            return false;
+        }
+        try {
+            if (window == null || position - windowStart >= window.limit()) {
+                map();
+            }
+            int from = (int) (position - windowStart);
+            int limit = window.limit();
+            int i = from;
+            while (i < limit && window.get(i) != '\n') {
+                i++;
+            }
+            position = windowStart + Math.min(i + 1, limit);
+            if (i > from && window.get(i - 1) == '\r' && i < limit) {
+                i--;
+            }
+            action.accept(decode(from, i));
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        long mid = position + (end - position) / 2;
+        if (end - position < MIN_SPLIT) {
+            return null;
+        }
+        try {
+            long split = nextLineStart(mid);
+            if (split < 0 || split >= end) {
+                return null;
+            }
+            LineSpliterator prefix = new LineSpliterator(channel, cs, position, split);
+            position = split;
+            window = null;
+            return prefix;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - position;      // a byte count, which is all that's needed to balance splits
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    // maps the next window, trimmed back to the last line feed in it unless it reaches the end of the range
+    private void map() throws IOException {
+        long size = Math.min(end - position, MAX_WINDOW);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        windowStart = position;
+        if (position + size < end) {
+            int last = (int) size - 1;
+            while (last >= 0 && window.get(last) != '\n') {
+                last--;
+            }
+            if (last < 0) {
+                throw new IOException("line at offset " + position + " is longer than " + MAX_WINDOW + " bytes");
+            }
+            ((Buffer) window).limit(last + 1);      // cast to Buffer so this still runs on Java 8 when built with a newer javac
+        }
+    }
+
+    // returns the offset just past the first line feed at or after from, or -1 if there is none before the end
+    private long nextLineStart(long from) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        for (long p = from; p < end; ) {
+            ((Buffer) scan).clear();                // cast to Buffer so this still runs on Java 8 when built with a newer javac
+            ((Buffer) scan).limit((int) Math.min(SCAN_SIZE, end - p));
+            int n = channel.read(scan, p);
+            if (n <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < n; i++) {
+                if (scan.get(i) == '\n') {
+                    return p + i + 1;
+                }
+            }
+            p += n;
+        }
+        return -1;
+    }
+
+    private String decode(int from, int to) throws CharacterCodingException {
+        if (from == to) {
+            return "";
+        }
+        if (decoder == null) {
+            decoder = cs.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            chars = CharBuffer.allocate(256);
+        }
+        ByteBuffer in = window.duplicate();
+        ((Buffer) in).limit(to).position(from);    // cast to Buffer so this still runs on Java 8 when built with a newer javac
+        int needed = (int) ((to - from) * (double) decoder.maxCharsPerByte()) + 1;
+        if (chars.capacity() < needed) {
+            chars = CharBuffer.allocate(Math.max(needed, chars.capacity() * 2));
+        }
+        ((Buffer) chars).clear();
+        decoder.reset();
+        CoderResult r = decoder.decode(in, chars, true);
+        if (r.isUnderflow()) {
+            r = decoder.flush(chars);
+        }
+        if (!r.isUnderflow()) {
+            r.throwException();
+        }
+        ((Buffer) chars).flip();
+        return chars.toString();
+    }
+}
@@ -0,0 +1,183 @@
+package org.hankster.functional.collectors;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.stream.LongStream;
+
+/**
+ * A growable list of longs, backed by a long[] the way {@link java.util.ArrayList} is backed by an Object[], so each
+ * element takes 8 bytes instead of a reference to a boxed {@link Long}.  It is a full {@code List<Long>}, but
+ * the methods that take and return longs, like {@link #addLong(long)} and {@link #getLong(int)}, never box.  To collect an
+ * {@link LongStream} into one without boxing:
+ * <pre>
+ * LongArrayList list = longStream.collect(LongArrayList::new, LongArrayList::addLong, LongArrayList::addAll);
+ * </pre>
+ * For a stream of objects, see {@link ToListCollectors#toLongList(java.util.function.ToLongFunction)}.  Not thread safe.
+ */
+public class LongArrayList extends AbstractList<Long> implements RandomAccess {
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private long[] elements;
+    private int size = 0;
+
+    /**
+     * Creates an empty list with room for 10 elements.
+     */
+    public LongArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list.
+     * @param initialCapacity the number of elements the list can hold before it reallocates
+     */
+    public LongArrayList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must not be negative: " + initialCapacity);
+        }
+        this.elements = new long[initialCapacity];
+    }
+
+    /**
+     * Appends a long.
+     * @param value the long to add
+     */
+    public void addLong(long value) {
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+        modCount++;
+    }
+
+    /**
+     * Appends all the longs in another list.
+     * @param other the list to add
+     */
+    public void addAll(LongArrayList other) {
+        int n = other.size;
+        if (size + n > elements.length) {
+            grow(size + n);
+        }
+        System.arraycopy(other.elements, 0, elements, size, n);
+        size += n;
+        modCount++;
+    }
+
+    /**
+     * @param index the index of the long to return
+     * @return the long at the index
+     */
+    public long getLong(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * @param index the index of the long to replace
+     * @param value the new long
+     * @return the long that was at the index
+     */
+    public long setLong(int index, long value) {
+        checkIndex(index);
+        long old = elements[index];
+        elements[index] = value;
+        return old;
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public Long set(int index, Long value) {
+        return setLong(index, value);
+    }
+
+    @Override
+    public void add(int index, Long value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        long v = value;
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = v;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Long remove(int index) {
+        checkIndex(index);
+        long old = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes sure the list can hold at least minCapacity elements without reallocating.
+     * @param minCapacity the capacity needed
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Shrinks the backing array to the size of the list.
+     */
+    public void trimToSize() {
+        if (size < elements.length) {
+            elements = Arrays.copyOf(elements, size);
+        }
+    }
+
+    /**
+     * @return a new array holding the longs in the list
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * @return a stream of the longs in the list, without boxing
+     */
+    public LongStream longStream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    // grows by half again, like ArrayList, or to minCapacity if that is more
+    private void grow(int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("list too large: " + Integer.toUnsignedString(minCapacity));
+        }
+        long capacity = Math.max(minCapacity, Math.max(DEFAULT_CAPACITY, elements.length + (elements.length >> 1)));
+        elements = Arrays.copyOf(elements, (int) Math.min(capacity, MAX_ARRAY_SIZE));
+    }
+}
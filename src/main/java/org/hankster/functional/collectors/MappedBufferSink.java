@@ -0,0 +1,97 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * A {@link BufferSink} whose buffers are windows memory-mapped over a {@link FileChannel}, so encoded bytes land
+ * directly in the page cache.  Each time a window fills, the next window is mapped right after the bytes that were
+ * encoded, twice as big as the last one until it reaches the maximum window size.  Mapping extends the file, so the
+ * file is truncated to the exact number of bytes encoded when the sink is finished or closed.
+ */
+final class MappedBufferSink implements BufferSink {
+    static final int INITIAL_WINDOW = 64 << 10;
+    static final int MIN_WINDOW = 1 << 10;
+
+    private final FileChannel channel;
+    private final int maxWindow;
+    private int windowSize;
+    private long windowStart;
+    private ByteBuffer window;
+
+    /**
+     * Opens the file for reading and writing, since a channel has to be readable to map it read-write.  APPEND is
+     * honored by mapping the first window at the end of the existing file.
+     * @param path the file to write to
+     * @param maxWindow the largest window to map, in bytes
+     * @param options 0 or more OpenOption values
+     * @throws IOException if the file could not be opened or mapped
+     */
+    MappedBufferSink(Path path, int maxWindow, OpenOption... options) throws IOException {
+        if (maxWindow < MIN_WINDOW) {
+            throw new IllegalArgumentException("maxWindow must be at least " + MIN_WINDOW + ": " + maxWindow);
+        }
+        Set<OpenOption> set = FileOptions.forWriting(options);
+        set.add(StandardOpenOption.READ);
+        boolean append = set.remove(StandardOpenOption.APPEND);
+        this.channel = FileChannel.open(path, set);
+        this.maxWindow = maxWindow;
+        this.windowSize = Math.min(INITIAL_WINDOW, maxWindow);
+        this.windowStart = append ? channel.size() : 0;
+        try {
+            this.window = map();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the first window to encode into
+     */
+    ByteBuffer first() {
+        return window;
+    }
+
+    @Override
+    public ByteBuffer drain(ByteBuffer full) throws IOException {
+        windowStart += full.position();
+        windowSize = (int) Math.min((long) windowSize << 1, maxWindow);
+        window = map();
+        return window;
+    }
+
+    @Override
+    public void finish(ByteBuffer last) throws IOException {
+        window = last;
+        truncate();
+    }
+
+    // truncates to what has been encoded so far, so a collector that is closed before it finishes leaves no zero-filled tail
+    @Override
+    public void close() throws IOException {
+        try {
+            if (channel.isOpen() && window != null) {
+                truncate();
+            }
+        } finally {
+            window = null;
+            channel.close();
+        }
+    }
+
+    private ByteBuffer map() throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, windowStart, windowSize);
+    }
+
+    // the mapped windows can't be unmapped until they're garbage collected, which is fine on Linux and macOS, but
+    // Windows refuses to truncate a file that is still mapped
+    private void truncate() throws IOException {
+        channel.truncate(windowStart + window.position());
+    }
+}
@@ -0,0 +1,128 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Collector} that writes {@link Stream} contents to a file as lines, like {@link FileCollector}, but that
+ * encodes each line directly into a memory-mapped window of the file instead of going through a chain of Writers and
+ * OutputStreams.  Each line is copied once, from the String into the page cache, and there is no system call per
+ * buffer-full, which pays off for multi-gigabyte files.  The window is remapped further along the file as it fills, and
+ * the file is truncated to its exact length in the finisher.
+ * <p>
+ * Like {@link FileCollector}, every thread shares the same window, so this is meant for sequential streams.
+ */
+public class MappedFileCollector implements Collector<String, MappedFileCollector, Path>, Closeable {
+
+    /** the default size of the largest window that is mapped at once */
+    public static final int DEFAULT_MAX_WINDOW = 64 << 20;
+
+    Path path;
+    MappedBufferSink sink = null;
+    LineEncoder encoder = null;
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified file.  The
+     * file is closed upon completion.  If it does not complete, (if, for instance, a RuntimeException is thrown),
+     * you will have to call close() on the collector.  The file is created even if the upstream is empty
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public MappedFileCollector(Path path, Charset cs, OpenOption... options) {
+        this(path, cs, DEFAULT_MAX_WINDOW, options);
+    }
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified file,
+     * mapping at most maxWindowSize bytes of the file at once.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param maxWindowSize the size of the largest window to map, in bytes.  Must be at least 1024.
+     * @param options 0 or more OpenOption values
+     * @throws UncheckedIOException if an IOException is thrown while opening or writing to the file.
+     */
+    public MappedFileCollector(Path path, Charset cs, int maxWindowSize, OpenOption... options) {
+        try {
+            this.path = path;
+            this.sink = new MappedBufferSink(path, maxWindowSize, options);
+            this.encoder = new LineEncoder(cs, System.lineSeparator(), sink, sink.first());
+        } catch (IOException e) {
+            closeAndThrow(e);
+        }
+    }
+
+    @Override
+    public Supplier<MappedFileCollector> supplier() {
+        return () -> this;
+    }
+
+    @Override
+    public BiConsumer<MappedFileCollector, String> accumulator() {
+        return (collector, s) -> {
+            try {
+                encoder.writeLine(s);
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    // supplier will always return the single instance, so combining is simple--just pick one and return it
+    @Override
+    public BinaryOperator<MappedFileCollector> combiner() {
+        return (c1, c2) -> c1;
+    }
+
+    @Override
+    public Function<MappedFileCollector, Path> finisher() {
+        return collector -> {
+            try {
+                encoder.finish();
+                close();
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+            return path;
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.noneOf(Characteristics.class);
+    }
+
+    /**
+     * Closes the file, truncating it to the lines that have been written so far.
+     * @throws IOException if the file could not be truncated or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try (MappedBufferSink sinkRef = sink) {
+
+        } finally {
+            sink = null;
+            encoder = null;
+        }
+    }
+
+    private void closeAndThrow(IOException e) {
+        try {
+            close();
+        } catch (IOException e2){
+            e.addSuppressed(e2);
+        }
+        throw new UncheckedIOException(e);
+    }
+}
@@ -0,0 +1,73 @@
+package org.hankster.functional.collectors;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link OutputStream} that counts the bytes written through it, the number of writes and flushes, and the time
+ * spent blocked in them, once it is enabled.  Until then it only delegates, so it costs one branch per write.  It
+ * sits beneath a {@link RecordWriter}, whose lock every write and flush is made under, so the counters need no
+ * synchronization of their own.
+ */
+final class MeteredOutputStream extends FilterOutputStream {
+    boolean enabled = false;
+    long bytes = 0;
+    long writes = 0;
+    long flushes = 0;
+    long nanos = 0;
+
+    MeteredOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!enabled) {
+            out.write(b, off, len);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            out.write(b, off, len);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+        bytes += len;
+        writes++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!enabled) {
+            out.flush();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            out.flush();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+        flushes++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!enabled) {
+            out.close();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            out.close();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+}
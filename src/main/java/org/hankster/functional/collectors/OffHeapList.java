@@ -0,0 +1,217 @@
+package org.hankster.functional.collectors;
+
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * An unmodifiable list of fixed-size records, kept serialized in direct ByteBuffers outside the Java heap, so that a
+ * very large list of small records costs the garbage collector a few objects per megabyte rather than one per record.
+ * {@link ToListCollectors#toOffHeapList(RecordCodec, int)} collects into one.  Each record takes exactly recordSize
+ * bytes; a record that serializes to fewer is padded with zeros, and the codec must be able to read it back from all
+ * recordSize bytes.  Every {@link #get(int)} deserializes a new object, so when reading the whole list, prefer
+ * {@link #stream()} or {@link #forEach(Consumer)}, which read each buffer sequentially and don't allocate a view per
+ * record.  The codec is passed the same buffer for every record it reads, so it must not hold on to it.
+ * <p>
+ * The memory is freed when the list is garbage collected, as it is for any direct buffer.
+ * @param <T> the type of elements
+ */
+public final class OffHeapList<T> extends AbstractList<T> implements RandomAccess {
+
+    /** the number of records in the first direct buffer of each fork-join leaf */
+    static final int FIRST_CHUNK_RECORDS = 16;
+
+    /** the most bytes in a direct buffer, unless a record is bigger */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private final RecordCodec<T> codec;
+    private final int recordSize;
+    private final ByteBuffer[] chunks;
+    private final int[] starts;             // the index of each chunk's first record, followed by the size
+    private final int size;
+
+    // casts to Buffer so this still runs on Java 8 when built with a newer javac
+    private OffHeapList(RecordCodec<T> codec, int recordSize, List<ByteBuffer> buffers) {
+        this.codec = codec;
+        this.recordSize = recordSize;
+        this.chunks = new ByteBuffer[buffers.size()];
+        this.starts = new int[chunks.length + 1];
+        long count = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            ByteBuffer chunk = buffers.get(i);
+            ((Buffer) chunk).flip();
+            chunks[i] = chunk;
+            starts[i] = (int) count;
+            count += chunk.limit() / recordSize;
+            if (count > Integer.MAX_VALUE) {
+                throw new IllegalStateException("too many records for a List: " + count);
+            }
+        }
+        this.size = (int) count;
+        starts[chunks.length] = size;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int chunk = locate(index);
+        int offset = (index - starts[chunk]) * recordSize;
+        ByteBuffer record = chunks[chunk].duplicate();
+        ((Buffer) record).limit(offset + recordSize).position(offset);
+        return codec.deserialize(record);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new RecordSpliterator(0, size);
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        spliterator().forEachRemaining(action);
+    }
+
+    /**
+     * @return the number of bytes of direct memory the list holds on to
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    // the index of the chunk that holds the record at index; chunks are never empty, so the starts are distinct
+    private int locate(int index) {
+        int i = Arrays.binarySearch(starts, 0, chunks.length, index);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    // reads a range of records, one chunk at a time, through a single view of each chunk
+    private final class RecordSpliterator implements Spliterator<T> {
+        private int position;
+        private final int end;
+
+        RecordSpliterator(int position, int end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            if (position >= end) {
+                return false;
+            }
+            action.accept(get(position++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            while (position < end) {
+                int chunk = locate(position);
+                int to = Math.min(starts[chunk + 1], end);
+                ByteBuffer view = chunks[chunk].duplicate();
+                for (int offset = (position - starts[chunk]) * recordSize; position < to; position++, offset += recordSize) {
+                    ((Buffer) view).limit(offset + recordSize).position(offset);
+                    action.accept(codec.deserialize(view));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int n = end - position;
+            if (n < 2) {
+                return null;
+            }
+            int mid = position + (n >>> 1);
+            Spliterator<T> prefix = new RecordSpliterator(position, mid);
+            position = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+        }
+    }
+
+    /**
+     * The accumulation type of {@link ToListCollectors#toOffHeapList(RecordCodec, int)}: the chunks one fork-join leaf
+     * has written.  Like {@link ChunkedBuffer}'s, each chunk is twice as big as the one before, up to
+     * {@link #CHUNK_SIZE}, so a leaf with few records doesn't hold on to a whole megabyte.  Leaves are combined by
+     * appending the right-hand leaf's chunks to the left's, so a chunk may be left partly full, but by no more than
+     * the records already in its leaf.
+     * @param <T> the type of elements
+     */
+    static final class Builder<T> {
+        private final RecordCodec<T> codec;
+        private final int recordSize;
+        private final int maxChunkRecords;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer tail = null;
+        private int nextChunkRecords;
+
+        Builder(RecordCodec<T> codec, int recordSize) {
+            this.codec = codec;
+            this.recordSize = recordSize;
+            this.maxChunkRecords = Math.max(CHUNK_SIZE / recordSize, 1);
+            this.nextChunkRecords = Math.min(FIRST_CHUNK_RECORDS, maxChunkRecords);
+        }
+
+        void accept(T t) {
+            if (tail == null || tail.remaining() < recordSize) {
+                tail = ByteBuffer.allocateDirect(nextChunkRecords * recordSize);
+                chunks.add(tail);
+                nextChunkRecords = Math.min(maxChunkRecords, nextChunkRecords << 1);
+            }
+            int start = tail.position();
+            ((Buffer) tail).limit(start + recordSize);
+            try {
+                codec.serialize(t, tail);
+            } catch (BufferOverflowException e) {
+                ((Buffer) tail).position(start);
+                throw new IllegalArgumentException("record is longer than " + recordSize + " bytes: " + t, e);
+            } finally {
+                ((Buffer) tail).limit(tail.capacity());
+            }
+            ((Buffer) tail).position(start + recordSize);
+        }
+
+        Builder<T> append(Builder<T> right) {
+            if (right.tail != null) {
+                chunks.addAll(right.chunks);
+                tail = right.tail;
+            }
+            return this;
+        }
+
+        OffHeapList<T> build() {
+            return new OffHeapList<>(codec, recordSize, chunks);
+        }
+    }
+}
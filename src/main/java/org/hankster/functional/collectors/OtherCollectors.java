@@ -1,19 +1,30 @@
 package org.hankster.functional.collectors;
 
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Some useful collectors not found in {@link ToListCollectors}, {@link ToSetCollectors}, etc. including collectors that stream to
@@ -28,20 +39,106 @@ public interface OtherCollectors {
      * buffers to a "spine", leaving existing data where it is.  Each spine is twice as big as the previous spine, so it
      * scales up kind of like {@link ArrayList}, but without moving existing data from the old array to the new one.  If you find
      * yourself reading in a bunch of stuff with a stream into memory then writing it all out with a stream, this may be a good alternative.
+     * The returned Stream knows its exact size, and splits its elements evenly in half however they fall in the spine, so a
+     * parallel stage after it is well balanced.  Under a parallel stream, combining two leaves' buffers links their spines
+     * in constant time, so no element is copied more than once.
      * @param <T> Stream type
      * @return a Stream of type T
      */
     static<T> Collector<T, Stream.Builder<T>, Stream<T>> toStream(){
         return Collector.of(
-                Stream::builder,                                            // creates the Stream.Builder
+                ChunkedBuffer.OfRef::new,                                   // creates the Stream.Builder
                 Stream.Builder::accept,                                     // adds items from the upstream
                 (sb1, sb2) -> {
-                    sb2.build().forEach(sb1);                               // a Stream.Builder is a Consumer, so pour sb2 into sb1
+                    // the supplier only makes ChunkedBuffers, so link sb2's chunks after sb1's instead of copying them
+                    ((ChunkedBuffer.OfRef<T>) sb1).append((ChunkedBuffer.OfRef<T>) sb2);
                     return sb1;
                 },
                 Stream.Builder::build);                                     // Finisher converts Stream.Builder to a Stream
     }
 
+    /**
+     * Returns an {@link IntStream} of the upstream results, mapped to ints, like {@link #toStream()} but without boxing.
+     * The ints are buffered in chunks that double in size, like {@link IntStream.Builder}'s, and the returned stream
+     * knows its exact size and splits evenly, so a parallel stage after it is well balanced.
+     * @param mapper maps each element to an int
+     * @param <T> upstream type
+     * @return an IntStream
+     */
+    static<T> Collector<T, ?, IntStream> toIntStream(ToIntFunction<? super T> mapper){
+        return Collector.<T, ChunkedBuffer.OfInt, IntStream>of(
+                ChunkedBuffer.OfInt::new,
+                (b, t) -> b.accept(mapper.applyAsInt(t)),
+                (b1, b2) -> {
+                    b1.append(b2);
+                    return b1;
+                },
+                b -> StreamSupport.intStream(b.spliterator(), false));
+    }
+
+    /**
+     * Returns a {@link LongStream} of the upstream results, mapped to longs, like {@link #toIntStream(ToIntFunction)}.
+     * @param mapper maps each element to a long
+     * @param <T> upstream type
+     * @return a LongStream
+     */
+    static<T> Collector<T, ?, LongStream> toLongStream(ToLongFunction<? super T> mapper){
+        return Collector.<T, ChunkedBuffer.OfLong, LongStream>of(
+                ChunkedBuffer.OfLong::new,
+                (b, t) -> b.accept(mapper.applyAsLong(t)),
+                (b1, b2) -> {
+                    b1.append(b2);
+                    return b1;
+                },
+                b -> StreamSupport.longStream(b.spliterator(), false));
+    }
+
+    /**
+     * Returns a {@link DoubleStream} of the upstream results, mapped to doubles, like
+     * {@link #toIntStream(ToIntFunction)}.
+     * @param mapper maps each element to a double
+     * @param <T> upstream type
+     * @return a DoubleStream
+     */
+    static<T> Collector<T, ?, DoubleStream> toDoubleStream(ToDoubleFunction<? super T> mapper){
+        return Collector.<T, ChunkedBuffer.OfDouble, DoubleStream>of(
+                ChunkedBuffer.OfDouble::new,
+                (b, t) -> b.accept(mapper.applyAsDouble(t)),
+                (b1, b2) -> {
+                    b1.append(b2);
+                    return b1;
+                },
+                b -> StreamSupport.doubleStream(b.spliterator(), false));
+    }
+
+    /**
+     * Returns a Stream with the results of the upstream, like {@link #toStream()}, but keeps at most maxInMemory of them
+     * in memory and spills the rest to temp files, so an upstream bigger than budgeted can't exhaust the heap.  Close
+     * the returned Stream to delete the temp files.  See {@link SpillingStreamCollector}.
+     * @param codec writes spilled elements and reads them back
+     * @param maxInMemory the most elements to keep in memory
+     * @param <T> Stream type
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a Stream of type T
+     */
+    static<T> Collector<T, ?, Stream<T>> toStream(RecordCodec<T> codec, long maxInMemory){
+        return new SpillingStreamCollector<>(codec, maxInMemory);
+    }
+
+    /**
+     * Returns a Stream with the results of the upstream, like {@link #toStream(RecordCodec, long)}, but budgets memory
+     * in bytes, as estimated by the weigher, e.g. {@code s -> 40 + 2 * s.length()} for Strings.
+     * @param codec writes spilled elements and reads them back
+     * @param maxBytes the most bytes to keep in memory
+     * @param weigher estimates the size of each element in bytes
+     * @param <T> Stream type
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a Stream of type T
+     */
+    static<T> Collector<T, ?, Stream<T>> toStream(RecordCodec<T> codec, long maxBytes, ToLongFunction<? super T> weigher){
+        return new SpillingStreamCollector<>(codec, maxBytes, weigher, null);
+    }
+
     /**
      * Convenient wrapper for {@link FileCollector}, that writes each string element to the specified file as lines}.
      * The encoding it uses to write is UTF-8. The file is closed upon completion.
@@ -54,6 +151,287 @@ public interface OtherCollectors {
         return new FileCollector(dest, StandardCharsets.UTF_8, options);
     }
 
+    /**
+     * Convenient wrapper for {@link FileCollector}, that writes each string element to the specified file as lines,
+     * compressing the file as it goes.  The encoding it uses to write is UTF-8. The file is closed upon completion.
+     * @param dest file to write
+     * @param compression how to compress the file, e.g. {@link Compression#PARALLEL_GZIP} to use all cores
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, BufferedWriter, Path> toFile(Path dest, Compression compression, OpenOption...options){
+        return new FileCollector(dest, StandardCharsets.UTF_8, compression, options);
+    }
+
+    /**
+     * Convenient wrapper for {@link FileCollector#batches()}, that writes every string in each batch element to the
+     * specified file as lines, one batch at a time.  The encoding it uses to write is UTF-8. The file is closed upon
+     * completion.
+     * @param dest file to write
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects batches of Strings to the specified file
+     */
+    static Collector<Collection<String>, BufferedWriter, Path> toFileFromBatches(Path dest, OpenOption...options){
+        return new FileCollector(dest, StandardCharsets.UTF_8, options).batches();
+    }
+
+    /**
+     * Convenient wrapper for {@link FileCollector#arrays()}, that writes every string in each array element to the
+     * specified file as lines, one array at a time.  The encoding it uses to write is UTF-8. The file is closed upon
+     * completion.
+     * @param dest file to write
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects arrays of Strings to the specified file
+     */
+    static Collector<String[], BufferedWriter, Path> toFileFromArrays(Path dest, OpenOption...options){
+        return new FileCollector(dest, StandardCharsets.UTF_8, options).arrays();
+    }
+
+    /**
+     * Convenient wrapper for {@link FileCollector}, that writes each string element to the specified file followed by
+     * the specified terminator instead of a line separator, e.g. {@code "\0"} for null-delimited records.  The encoding
+     * it uses to write is UTF-8. The file is closed upon completion.
+     * @param dest file to write
+     * @param terminator what to write after each string; may be empty
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, BufferedWriter, Path> toFile(Path dest, String terminator, OpenOption...options){
+        return new FileCollector(dest, StandardCharsets.UTF_8, options).withRecordTerminator(terminator);
+    }
+
+    /**
+     * Convenient wrapper for {@link FileCollector}, that writes each string element to the specified file as lines,
+     * collecting the encoded bytes in a buffer sized as specified before writing them, e.g.
+     * {@code BufferSizing.adaptive(64 << 10, 8 << 20)} for large sequential files on fast storage.  The encoding it
+     * uses to write is UTF-8. The file is closed upon completion.
+     * @param dest file to write
+     * @param sizing the size of the buffer, which may grow as the file is written
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, BufferedWriter, Path> toFile(Path dest, BufferSizing sizing, OpenOption...options){
+        return new FileCollector(dest, StandardCharsets.UTF_8, sizing, options);
+    }
+
+    /**
+     * Convenient wrapper for {@link FileCollector}, that writes each string element to the specified file as lines, and
+     * hands the listener the {@link WriteMetrics} for the file once it is closed.  The encoding it uses to write is
+     * UTF-8.
+     * @param dest file to write
+     * @param listener receives the metrics when the collector finishes
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, BufferedWriter, Path> toFile(Path dest, Consumer<? super WriteMetrics> listener, OpenOption...options){
+        return new FileCollector(dest, StandardCharsets.UTF_8, options).withMetrics(listener);
+    }
+
+    /**
+     * Convenient wrapper for {@link OutputCollector#ofStream(OutputStream, Charset, boolean)}, that writes each string
+     * element to the specified stream as lines.  The encoding it uses to write is UTF-8.
+     * @param target stream to write
+     * @param closeTarget whether to close the stream upon completion, rather than just flushing it
+     * @param <S> the type of the stream
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown while writing.
+     * @return a collector that collects Strings to the specified stream, and returns it
+     */
+    static <S extends OutputStream> Collector<String, BufferedWriter, S> toOutputStream(S target, boolean closeTarget){
+        return OutputCollector.ofStream(target, StandardCharsets.UTF_8, closeTarget);
+    }
+
+    /**
+     * Convenient wrapper for {@link OutputCollector#ofChannel(WritableByteChannel, Charset, boolean)}, that writes each
+     * string element to the specified channel as lines, e.g. to the sink of a {@link java.nio.channels.Pipe} or a
+     * socket.  The encoding it uses to write is UTF-8.
+     * @param target channel to write, in blocking mode
+     * @param closeTarget whether to close the channel upon completion
+     * @param <C> the type of the channel
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown while writing.
+     * @return a collector that collects Strings to the specified channel, and returns it
+     */
+    static <C extends WritableByteChannel> Collector<String, BufferedWriter, C> toChannel(C target, boolean closeTarget){
+        return OutputCollector.ofChannel(target, StandardCharsets.UTF_8, closeTarget);
+    }
+
+    /**
+     * Convenient wrapper for {@link FileCollector#FileCollector(Path, Charset, FsyncPolicy)}, that writes each string
+     * element as lines to a temp file next to dest, forces it to disk as the policy says, and atomically moves it to dest
+     * when the stream is exhausted, so readers never see a partial file.  The encoding it uses to write is UTF-8.
+     * @param dest file to write
+     * @param fsync when to force the file to the storage device
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, BufferedWriter, Path> toFileDurably(Path dest, FsyncPolicy fsync){
+        return new FileCollector(dest, StandardCharsets.UTF_8, fsync);
+    }
+
+    /**
+     * Convenient wrapper for {@link FileCollector#FileCollector(Path, java.nio.charset.Charset, int, int, OpenOption...)},
+     * that writes each string element to the specified file as lines, handing full buffers to a dedicated writer thread
+     * so the upstream doesn't wait on the disk.  The encoding it uses to write is UTF-8. The file is closed upon completion.
+     * @param dest file to write
+     * @param bufferCount the number of buffers, at least 2
+     * @param bufferSize the size of each buffer, in bytes, at least 1
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations, including on the
+     *                              writer thread.
+     * @throws IllegalArgumentException if bufferCount is less than 2 or bufferSize is less than 1
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, BufferedWriter, Path> toFileAsync(Path dest, int bufferCount, int bufferSize, OpenOption...options){
+        return new FileCollector(dest, StandardCharsets.UTF_8, bufferCount, bufferSize, options);
+    }
+
+    /**
+     * Convenient wrapper for {@link ParallelFileCollector}, that writes each string element to the specified file as lines,
+     * in encounter order, even when the upstream is parallel.  Each fork-join leaf encodes into its own buffer, so
+     * encoding scales across cores.  The encoding it uses to write is UTF-8.
+     * @param dest file to write
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, ?, Path> toFileInParallel(Path dest, OpenOption...options){
+        return new ParallelFileCollector(dest, StandardCharsets.UTF_8, options);
+    }
+
+    /**
+     * Convenient wrapper for {@link MappedFileCollector}, that writes each string element to the specified file as lines,
+     * encoding them directly into a memory-mapped window of the file.  Worth it for very large files.
+     * The encoding it uses to write is UTF-8. The file is closed upon completion.
+     * @param dest file to write
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, ?, Path> toMappedFile(Path dest, OpenOption...options){
+        return new MappedFileCollector(dest, StandardCharsets.UTF_8, options);
+    }
+
+    /**
+     * Convenient wrapper for {@link ChannelFileCollector}, that writes each string element to the specified file as lines,
+     * encoding them straight into a large direct buffer that is written with a {@link java.nio.channels.FileChannel}.
+     * The encoding it uses to write is UTF-8. The file is closed upon completion.
+     * @param dest file to write
+     * @param options options for opening the file
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to the specified file
+     */
+    static Collector<String, ?, Path> toChannelFile(Path dest, OpenOption...options){
+        return new ChannelFileCollector(dest, StandardCharsets.UTF_8, options);
+    }
+
+    /**
+     * Convenient wrapper for {@link RollingFileCollector}, that writes each string element as lines to a series of files
+     * in the given directory, rolling over to the next file once the current one holds maxLines lines or reaches
+     * maxBytes bytes.  The encoding it uses to write is UTF-8.
+     * @param directory the directory to write the files to
+     * @param namePattern a {@link String#format} pattern that is passed the index of each file, starting with 0, e.g.
+     *                    {@code "part-%05d.txt"}
+     * @param maxBytes the number of bytes at which a file is rolled over, or {@link Long#MAX_VALUE} for no limit
+     * @param maxLines the most lines a file may hold, or {@link Long#MAX_VALUE} for no limit
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to files, and returns the files written, in order
+     */
+    static Collector<String, ?, List<Path>> toRollingFiles(Path directory, String namePattern, long maxBytes, long maxLines){
+        return new RollingFileCollector(i -> directory.resolve(String.format(namePattern, i)), StandardCharsets.UTF_8, maxBytes, maxLines);
+    }
+
+    /**
+     * Convenient wrapper for {@link PartitionedFileCollector}, that writes each string element as a line to the file for
+     * its key, without holding the data in memory.  At most {@link PartitionedFileCollector#DEFAULT_MAX_OPEN} files are
+     * open at once.  The encoding it uses to write is UTF-8. The files are closed upon completion.
+     * @param classifier returns the key of the file a string is written to
+     * @param pathFactory returns the file to write for a key.  Each key must get a different file.
+     * @param <K> the key type
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects Strings to one file per key, and returns a map of each key to its file
+     */
+    static<K> Collector<String, ?, Map<K, Path>> toFiles(Function<? super String, ? extends K> classifier, Function<? super K, ? extends Path> pathFactory){
+        return new PartitionedFileCollector<>(classifier, pathFactory, StandardCharsets.UTF_8, PartitionedFileCollector.DEFAULT_MAX_OPEN);
+    }
+
+    /**
+     * Convenient wrapper for {@link BinaryFileCollector}, that writes each element to the specified file as a binary
+     * record of exactly recordSize bytes, without formatting it into a String first.  The file is closed upon completion.
+     * @param dest file to write
+     * @param recordSize the number of bytes in every record
+     * @param serializer writes exactly recordSize bytes for each element
+     * @param options options for opening the file
+     * @param <T> the type of elements written
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects elements to the specified file
+     */
+    static<T> Collector<T, ?, Path> toFixedWidthFile(Path dest, int recordSize, RecordSerializer<? super T> serializer, OpenOption...options){
+        return new BinaryFileCollector<>(dest, recordSize, serializer, options);
+    }
+
+    /**
+     * Convenient wrapper for {@link BinaryFileCollector}, that writes each element to the specified file as a binary
+     * record preceded by its length as a varint, without formatting it into a String first.  The file is closed upon
+     * completion.
+     * @param dest file to write
+     * @param serializer writes a record of any length for each element
+     * @param options options for opening the file
+     * @param <T> the type of elements written
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects elements to the specified file
+     */
+    static<T> Collector<T, ?, Path> toLengthPrefixedFile(Path dest, RecordSerializer<? super T> serializer, OpenOption...options){
+        return new BinaryFileCollector<>(dest, serializer, options);
+    }
+
+    /**
+     * A collector that writes each element to the specified file as a CSV (or TSV) record, with the columns described
+     * by the format.  Fields are quoted and escaped straight into the output buffer, so there is no need to build a
+     * String per element upstream.  Uses a {@link ChannelFileCollector}, so it is meant for sequential streams.  The
+     * file is closed upon completion.  If it does not complete, (if, for instance, a RuntimeException is thrown), you
+     * will have to call close() on the returned collector.
+     * @param dest file to write
+     * @param cs the character set to use
+     * @param format the columns, delimiter and header of the file
+     * @param options options for opening the file
+     * @param <T> the type of elements written
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects elements to the specified file
+     */
+    static<T> CsvFileCollector<T, ?> toCsvFile(Path dest, Charset cs, CsvFormat<T> format, OpenOption...options){
+        ChannelFileCollector collector = new ChannelFileCollector(dest, cs, options);
+        String header = format.header();
+        if (header != null) {
+            collector.writeLine(header);
+        }
+        return new CsvFileCollector<>(Collector.of(collector.supplier(), collector.appending(format::appendRecord),
+                collector.combiner(), collector.finisher()), collector);
+    }
+
+    /**
+     * Like {@link #toCsvFile(Path, Charset, CsvFormat, OpenOption...)}, but uses a {@link ParallelFileCollector}, so
+     * records are in encounter order and formatting scales across cores when the upstream is parallel.  If it does not
+     * complete, calling close() on the returned collector also deletes any temp files.
+     * @param dest file to write
+     * @param cs the character set to use
+     * @param format the columns, delimiter and header of the file
+     * @param options options for opening the file
+     * @param <T> the type of elements written
+     * @throws UncheckedIOException that wraps any {@link IOException} thrown during file operations.
+     * @return a collector that collects elements to the specified file
+     */
+    static<T> CsvFileCollector<T, ?> toCsvFileInParallel(Path dest, Charset cs, CsvFormat<T> format, OpenOption...options){
+        ParallelFileCollector collector = new ParallelFileCollector(dest, cs, options);
+        collector.setFirstLine(format.header());
+        return new CsvFileCollector<>(Collector.of(collector.supplier(), collector.appending(format::appendRecord),
+                collector.combiner(), collector.finisher()), collector);
+    }
+
     /**
      * A collector that pours the upstream results into a single collection that you specify.
      * @param existingCollection the collection to put results into
@@ -0,0 +1,79 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Collector} that writes {@link Stream} contents as lines to an {@link OutputStream} or a
+ * {@link WritableByteChannel}, such as a pipe to a child process or a socket, with the same buffering, record
+ * terminators, batches and metrics as {@link FileCollector}.  The finisher flushes the target, closes it unless told
+ * not to, and returns it.  Like {@link FileCollector}, this is meant for sequential streams.
+ * @param <T> the type of the target
+ */
+public class OutputCollector<T> extends WriterCollector<T> {
+
+    private final T target;
+
+    private OutputCollector(T target, OutputStream out, Charset cs, boolean closeTarget) {
+        this.target = target;
+        this.out = closeTarget ? out : new UnclosableOutputStream(out);
+        openWriters(cs, BufferSizing.DEFAULT);
+    }
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified stream.
+     * If it does not complete, (if, for instance, a RuntimeException is thrown), you will have to call close() on the
+     * collector.
+     * @param target the stream to write to
+     * @param cs the character set to use
+     * @param closeTarget whether to close the stream when the collector is finished or closed, rather than just
+     *                    flushing it
+     * @param <S> the type of the stream
+     * @return a collector that returns the stream
+     */
+    public static <S extends OutputStream> OutputCollector<S> ofStream(S target, Charset cs, boolean closeTarget) {
+        return new OutputCollector<>(target, target, cs, closeTarget);
+    }
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified channel,
+     * which must be in blocking mode.  If it does not complete, (if, for instance, a RuntimeException is thrown), you
+     * will have to call close() on the collector.
+     * @param target the channel to write to
+     * @param cs the character set to use
+     * @param closeTarget whether to close the channel when the collector is finished or closed
+     * @param <C> the type of the channel
+     * @return a collector that returns the channel
+     */
+    public static <C extends WritableByteChannel> OutputCollector<C> ofChannel(C target, Charset cs, boolean closeTarget) {
+        return new OutputCollector<>(target, Channels.newOutputStream(target), cs, closeTarget);
+    }
+
+    @Override
+    T finish() throws IOException {
+        close();
+        return target;
+    }
+
+    // keeps the writers from closing a target that belongs to the caller; closing just flushes it
+    private static final class UnclosableOutputStream extends FilterOutputStream {
+
+        UnclosableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Collector} that writes {@link Stream} contents to a file as lines, like {@link FileCollector}, but that is
+ * safe and scalable for parallel streams.  {@link FileCollector} hands every thread the same writer, so lines from
+ * different threads can interleave and end up out of order.  This collector gives each fork-join leaf its own private
+ * {@link Shard} that encodes its lines into memory, and the combiner concatenates shards in encounter order.  When a
+ * shard buffers more than its spill threshold, it spills to a private temp file in the target file's directory.  The
+ * finisher writes the shards to the target file in order, then deletes the temp files.
+ * <p>
+ * Because every byte is buffered before it reaches the target file, this is slower than {@link FileCollector} for
+ * sequential streams.  Use it when the upstream is parallel.
+ */
+public class ParallelFileCollector implements Collector<String, ParallelFileCollector.Shard, Path>, Closeable {
+
+    /** the default number of encoded bytes a shard holds in memory before spilling to a temp file */
+    public static final int DEFAULT_SPILL_THRESHOLD = 8 << 20;
+
+    // the number of chars a shard collects before encoding them.  Lines are never split across chunks.
+    static final int CHUNK_CHARS = 32 << 10;
+
+    private final Path path;
+    private final Charset cs;
+    private final OpenOption[] options;
+    private final int spillThreshold;
+    private String firstLine = null;
+    private final Queue<Shard> shards = new ConcurrentLinkedQueue<>();      // every shard created, so close() can clean up
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified file.  The
+     * target file is not opened until the finisher runs.  If the collector does not complete, (if, for instance, a
+     * RuntimeException is thrown), you will have to call close() on the collector to delete the temp files.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param options 0 or more OpenOption values
+     */
+    public ParallelFileCollector(Path path, Charset cs, OpenOption... options) {
+        this(path, cs, DEFAULT_SPILL_THRESHOLD, options);
+    }
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to the specified file,
+     * specifying how many bytes each shard may hold in memory before spilling to a temp file.
+     * @param path the file to write to
+     * @param cs the character set to use
+     * @param spillThreshold the number of encoded bytes a shard holds in memory before spilling to a temp file
+     * @param options 0 or more OpenOption values
+     */
+    public ParallelFileCollector(Path path, Charset cs, int spillThreshold, OpenOption... options) {
+        if (spillThreshold <= 0) {
+            throw new IllegalArgumentException("spillThreshold must be positive: " + spillThreshold);
+        }
+        this.path = path;
+        this.cs = cs;
+        this.spillThreshold = spillThreshold;
+        this.options = options.clone();
+    }
+
+    @Override
+    public Supplier<Shard> supplier() {
+        return () -> {
+            Shard shard = new Shard();
+            shards.add(shard);
+            return shard;
+        };
+    }
+
+    @Override
+    public BiConsumer<Shard, String> accumulator() {
+        return appending((s, sb) -> sb.append(s));
+    }
+
+    /**
+     * An accumulator for collectors built on this one, that appends each element to the shard's chars as a line.
+     * @param appender appends an element to the StringBuilder, without a line separator
+     * @param <T> the type of elements
+     * @return an accumulator
+     */
+    <T> BiConsumer<Shard, T> appending(BiConsumer<? super T, StringBuilder> appender) {
+        return (shard, t) -> {
+            try {
+                appender.accept(t, shard.pending);
+                shard.endLine();
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    /**
+     * Writes a line, like a header, at the beginning of the file, before the shards.
+     * @param line the line to write first
+     */
+    void setFirstLine(String line) {
+        this.firstLine = line;
+    }
+
+    // the right-hand shard's segments always follow the left-hand shard's, so encounter order is preserved
+    @Override
+    public BinaryOperator<Shard> combiner() {
+        return (left, right) -> {
+            try {
+                return left.append(right);
+            } catch (IOException e) {
+                closeAndThrow(e);
+                return left;
+            }
+        };
+    }
+
+    @Override
+    public Function<Shard, Path> finisher() {
+        return shard -> {
+            try (FileChannel target = FileChannel.open(path, FileOptions.forWriting(options))) {
+                if (firstLine != null) {
+                    Shard first = new Shard();
+                    first.pending.append(firstLine);
+                    first.endLine();
+                    first.writeTo(target);
+                }
+                shard.writeTo(target);
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return path;
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.noneOf(Characteristics.class);
+    }
+
+    /**
+     * Deletes any temp files that the shards have spilled to.
+     * @throws IOException if a temp file could not be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (Shard shard; (shard = shards.poll()) != null; ) {
+            try {
+                shard.discard();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                } else {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    private void closeAndThrow(IOException e) {
+        try {
+            close();
+        } catch (IOException e2){
+            e.addSuppressed(e2);
+        }
+        throw new UncheckedIOException(e);
+    }
+
+    /**
+     * The per-leaf accumulation type of a {@link ParallelFileCollector}.  A shard is an ordered list of segments of
+     * encoded bytes, each either in memory or in a range of a temp file, followed by the chars of lines that have not been
+     * encoded yet.
+     */
+    public final class Shard {
+        private final CharsetEncoder encoder = cs.newEncoder();
+        private final StringBuilder pending = new StringBuilder();
+        private final List<Object> segments = new ArrayList<>();               // ByteBuffers and SpillRanges
+        private long buffered = 0;                                             // bytes held in memory segments
+        private Path spillPath = null;
+        private FileChannel spill = null;
+
+        private Shard() {}
+
+        // called once a line's chars have been appended to pending
+        void endLine() throws IOException {
+            pending.append(System.lineSeparator());
+            if (pending.length() >= CHUNK_CHARS) {
+                encodePending();
+                if (buffered >= spillThreshold) {
+                    spill();
+                }
+            }
+        }
+
+        Shard append(Shard right) throws IOException {
+            encodePending();
+            right.encodePending();
+            segments.addAll(right.segments);
+            buffered += right.buffered;
+            right.segments.clear();
+            right.buffered = 0;
+            return this;
+        }
+
+        void writeTo(FileChannel target) throws IOException {
+            encodePending();
+            for (Object segment : segments) {
+                if (segment instanceof ByteBuffer) {
+                    ByteBuffer bb = (ByteBuffer) segment;
+                    while (bb.hasRemaining()) {
+                        target.write(bb);
+                    }
+                } else {
+                    ((SpillRange) segment).transferTo(target);
+                }
+            }
+            segments.clear();
+            buffered = 0;
+        }
+
+        private void encodePending() throws IOException {
+            if (pending.length() > 0) {
+                ByteBuffer bb = encoder.encode(CharBuffer.wrap(pending));
+                segments.add(bb);
+                buffered += bb.remaining();
+                pending.setLength(0);
+            }
+        }
+
+        // moves every in-memory segment to the end of this shard's temp file, leaving the order of segments unchanged
+        private void spill() throws IOException {
+            if (spill == null) {
+                Path dir = path.toAbsolutePath().getParent();
+                spillPath = Files.createTempFile(dir, path.getFileName().toString(), ".shard");
+                spill = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            for (ListIterator<Object> it = segments.listIterator(); it.hasNext(); ) {
+                Object segment = it.next();
+                if (segment instanceof ByteBuffer) {
+                    ByteBuffer bb = (ByteBuffer) segment;
+                    long position = spill.size();
+                    long length = bb.remaining();
+                    for (long at = position; bb.hasRemaining(); ) {
+                        at += spill.write(bb, at);
+                    }
+                    it.set(new SpillRange(spill, position, length));
+                }
+            }
+            buffered = 0;
+        }
+
+        private void discard() throws IOException {
+            segments.clear();
+            buffered = 0;
+            if (spill != null) {
+                try {
+                    spill.close();
+                } finally {
+                    Files.deleteIfExists(spillPath);
+                    spill = null;
+                }
+            }
+        }
+    }
+
+    // a range of bytes in a shard's temp file
+    private static final class SpillRange {
+        private final FileChannel channel;
+        private final long position;
+        private final long length;
+
+        SpillRange(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        void transferTo(FileChannel target) throws IOException {
+            for (long done = 0; done < length; ) {
+                done += channel.transferTo(position + done, length - done, target);
+            }
+        }
+    }
+}
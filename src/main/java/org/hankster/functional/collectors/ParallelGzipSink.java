@@ -0,0 +1,174 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link BufferSink} that writes a gzip file, deflating each full buffer as an independent block on an
+ * {@link Executor}, the way pigz does.  Every block but the last ends with a sync flush, so the raw deflate blocks
+ * can simply be concatenated, and every block but the first is primed with the last 32K of input before it, so the
+ * compression ratio is close to that of a single {@link Deflater}.  The CRC is computed on the filling thread as each
+ * block is submitted.  Compressed blocks are written in order; when too many are in flight, {@link #drain} waits for
+ * the oldest one.
+ */
+final class ParallelGzipSink implements BufferSink {
+    static final int DEFAULT_BLOCK_SIZE = 128 << 10;
+    private static final int DICTIONARY_SIZE = 32 << 10;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final WritableByteChannel channel;
+    private final int level;
+    private final int blockSize;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Deque<Block> inFlight = new ArrayDeque<>();
+    private final Deque<byte[]> spare = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private long size = 0;
+    private byte[] dictionary = null;
+
+    /**
+     * Writes the gzip header.
+     * @param channel where the gzip file is written
+     * @param level the deflate compression level, e.g. {@link Deflater#DEFAULT_COMPRESSION}
+     * @param blockSize the number of uncompressed bytes in each block
+     * @param executor where blocks are deflated
+     * @param maxInFlight the number of blocks that may be waiting to be deflated or written
+     * @throws IOException if the header could not be written
+     */
+    ParallelGzipSink(WritableByteChannel channel, int level, int blockSize, Executor executor, int maxInFlight) throws IOException {
+        this.channel = channel;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        write(HEADER);
+    }
+
+    /**
+     * @return the first buffer to fill
+     */
+    ByteBuffer first() {
+        return ByteBuffer.wrap(new byte[blockSize]);
+    }
+
+    @Override
+    public ByteBuffer drain(ByteBuffer full) throws IOException {
+        submit(full, false);
+        while (inFlight.size() >= maxInFlight || (!inFlight.isEmpty() && inFlight.peek().deflated.isDone())) {
+            writeOldest();
+        }
+        byte[] next = spare.poll();
+        return ByteBuffer.wrap(next != null ? next : new byte[blockSize]);
+    }
+
+    @Override
+    public void finish(ByteBuffer last) throws IOException {
+        submit(last, true);
+        while (!inFlight.isEmpty()) {
+            writeOldest();
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue());
+        trailer.putInt((int) size);
+        write(trailer.array());
+    }
+
+    // blocks still in flight finish in the background and are thrown away
+    @Override
+    public void close() throws IOException {
+        inFlight.clear();
+        channel.close();
+    }
+
+    private void submit(ByteBuffer bb, boolean last) {
+        byte[] input = bb.array();
+        int length = bb.position();
+        crc.update(input, 0, length);
+        size += length;
+        byte[] dict = dictionary;
+        dictionary = nextDictionary(dict, input, length);
+        inFlight.add(new Block(input, CompletableFuture.supplyAsync(() -> deflate(input, length, dict, last), executor)));
+    }
+
+    private void writeOldest() throws IOException {
+        Block block = inFlight.remove();
+        try {
+            write(block.deflated.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a block to be deflated");
+        } catch (ExecutionException e) {
+            throw new IOException("could not deflate a block", e.getCause());
+        }
+        spare.push(block.input);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+    }
+
+    private byte[] deflate(byte[] input, int length, byte[] dict, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dict != null && dict.length > 0) {
+                deflater.setDictionary(dict);
+            }
+            deflater.setInput(input, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            byte[] out = new byte[length + (length >> 3) + 64];
+            int n = 0;
+            for (;;) {
+                n += deflater.deflate(out, n, out.length - n, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                if (last ? deflater.finished() : n < out.length) {
+                    return Arrays.copyOf(out, n);
+                }
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length << 1);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // the last 32K of everything submitted so far
+    private static byte[] nextDictionary(byte[] previous, byte[] input, int length) {
+        if (length >= DICTIONARY_SIZE) {
+            return Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length);
+        }
+        int keep = previous == null ? 0 : Math.min(previous.length, DICTIONARY_SIZE - length);
+        byte[] dict = new byte[keep + length];
+        if (keep > 0) {
+            System.arraycopy(previous, previous.length - keep, dict, 0, keep);
+        }
+        System.arraycopy(input, 0, dict, keep, length);
+        return dict;
+    }
+
+    private static final class Block {
+        final byte[] input;
+        final CompletableFuture<byte[]> deflated;
+
+        Block(byte[] input, CompletableFuture<byte[]> deflated) {
+            this.input = input;
+            this.deflated = deflated;
+        }
+    }
+}
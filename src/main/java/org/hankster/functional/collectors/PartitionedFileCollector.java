@@ -0,0 +1,199 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Collector} that splits {@link Stream} contents into one file per key, writing each string as a line straight
+ * to its partition's file, so that, unlike {@link Collectors#groupingBy(Function)} followed by a {@link FileCollector}
+ * per group, the data never has to be held in memory.  The finisher returns a map of each key to the file written for
+ * it, in the order the keys were first seen.
+ * <p>
+ * At most maxOpen files are open at once.  When another one is needed, the least recently used file is flushed and
+ * closed, and it is reopened for appending if its key turns up again.  Because of that, use a character set whose
+ * encoder is stateless, like UTF-8, rather than one that writes a byte order mark, like UTF-16.
+ * <p>
+ * Every thread shares the same files.  Writes are synchronized, so a parallel stream won't corrupt the files, but lines
+ * are only in encounter order within each file for sequential streams.
+ * @param <K> the key type
+ */
+public class PartitionedFileCollector<K> implements Collector<String, PartitionedFileCollector<K>, Map<K, Path>>, Closeable {
+
+    /** the default number of files that may be open at once */
+    public static final int DEFAULT_MAX_OPEN = 64;
+
+    /** the size of the direct buffer each open file encodes into */
+    static final int BUFFER_SIZE = 64 << 10;
+
+    private final Function<? super String, ? extends K> classifier;
+    private final Function<? super K, ? extends Path> pathFactory;
+    private final Charset cs;
+    private final int maxOpen;
+    private final Map<K, Path> paths = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Partition> open = new LinkedHashMap<>(16, 0.75f, true);    // in LRU order
+    private final Deque<ByteBuffer> spareBuffers = new ArrayDeque<>();
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes each one as a line to the file for its key.
+     * The files are closed upon completion.  If it does not complete, (if, for instance, a RuntimeException is
+     * thrown), you will have to call close() on the collector.
+     * @param classifier returns the key of the file a string is written to
+     * @param pathFactory returns the file to write for a key.  Each key must get a different file.  Existing files are
+     *                    truncated the first time their key is seen.
+     * @param cs the character set to use
+     * @param maxOpen the most files that may be open at once
+     */
+    public PartitionedFileCollector(Function<? super String, ? extends K> classifier,
+                                    Function<? super K, ? extends Path> pathFactory,
+                                    Charset cs,
+                                    int maxOpen) {
+        if (maxOpen <= 0) {
+            throw new IllegalArgumentException("maxOpen must be positive: " + maxOpen);
+        }
+        this.classifier = classifier;
+        this.pathFactory = pathFactory;
+        this.cs = cs;
+        this.maxOpen = maxOpen;
+    }
+
+    @Override
+    public Supplier<PartitionedFileCollector<K>> supplier() {
+        return () -> this;
+    }
+
+    @Override
+    public BiConsumer<PartitionedFileCollector<K>, String> accumulator() {
+        return (collector, s) -> {
+            try {
+                write(s);
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    // supplier will always return the single instance, so combining is simple--just pick one and return it
+    @Override
+    public BinaryOperator<PartitionedFileCollector<K>> combiner() {
+        return (c1, c2) -> c1;
+    }
+
+    @Override
+    public Function<PartitionedFileCollector<K>, Map<K, Path>> finisher() {
+        return collector -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            synchronized (this) {
+                return new LinkedHashMap<>(paths);
+            }
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.noneOf(Characteristics.class);
+    }
+
+    /**
+     * Flushes and closes every open file.
+     * @throws IOException if a file could not be written or closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOException first = null;
+        for (Iterator<Partition> it = open.values().iterator(); it.hasNext(); ) {
+            Partition partition = it.next();
+            it.remove();
+            try {
+                partition.close();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                } else {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    private synchronized void write(String s) throws IOException {
+        K key = classifier.apply(s);
+        Partition partition = open.get(key);
+        if (partition == null) {
+            partition = open(key);
+        }
+        partition.encoder.writeLine(s);
+    }
+
+    private Partition open(K key) throws IOException {
+        if (open.size() >= maxOpen) {
+            Iterator<Partition> eldest = open.values().iterator();
+            Partition partition = eldest.next();
+            eldest.remove();
+            partition.close();
+        }
+        Path path = paths.get(key);
+        FileChannel channel;
+        if (path == null) {
+            path = pathFactory.apply(key);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            paths.put(key, path);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer buffer = spareBuffers.poll();
+        Partition partition = new Partition(channel, buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE));
+        open.put(key, partition);
+        return partition;
+    }
+
+    private void closeAndThrow(IOException e) {
+        try {
+            close();
+        } catch (IOException e2){
+            e.addSuppressed(e2);
+        }
+        throw new UncheckedIOException(e);
+    }
+
+    // an open file, and the buffer it encodes into, which goes back to the spares when the file is closed
+    private final class Partition {
+        final ByteBuffer buffer;
+        final ChannelBufferSink sink;
+        final LineEncoder encoder;
+
+        Partition(FileChannel channel, ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.sink = new ChannelBufferSink(channel);
+            this.encoder = new LineEncoder(cs, System.lineSeparator(), sink, buffer);
+        }
+
+        void close() throws IOException {
+            try (ChannelBufferSink sinkRef = sink) {
+                encoder.finish();
+            } finally {
+                ((Buffer) buffer).clear();          // cast to Buffer so this still runs on Java 8 when built with a newer javac
+                spareBuffers.push(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Writes an object as a binary record and reads it back, for collectors like {@link SpillingStreamCollector} that
+ * keep records somewhere other than the heap and hand them back later.
+ * @param <T> the type of object serialized
+ */
+public interface RecordCodec<T> extends RecordSerializer<T> {
+
+    /**
+     * Reads a record written by {@link #serialize(Object, ByteBuffer)}.
+     * @param buffer holds exactly one record, from its position to its limit
+     * @return the object
+     */
+    T deserialize(ByteBuffer buffer);
+
+    /**
+     * @param serializer writes each object
+     * @param deserializer reads each object back
+     * @param <T> the type of object serialized
+     * @return a codec made of the two functions
+     */
+    static <T> RecordCodec<T> of(RecordSerializer<? super T> serializer, Function<ByteBuffer, ? extends T> deserializer) {
+        return new RecordCodec<T>() {
+            @Override
+            public void serialize(T record, ByteBuffer buffer) {
+                serializer.serialize(record, buffer);
+            }
+
+            @Override
+            public T deserialize(ByteBuffer buffer) {
+                return deserializer.apply(buffer);
+            }
+        };
+    }
+
+    /**
+     * @return a codec that writes Strings as UTF-8
+     */
+    static RecordCodec<String> utf8() {
+        return of((s, buffer) -> buffer.put(s.getBytes(StandardCharsets.UTF_8)),
+                buffer -> StandardCharsets.UTF_8.decode(buffer).toString());
+    }
+
+    /**
+     * @return a codec that writes Longs as 8 bytes, for fixed-size collectors like
+     * {@link ToListCollectors#toOffHeapList(RecordCodec, int)}
+     */
+    static RecordCodec<Long> longs() {
+        return of((l, buffer) -> buffer.putLong(l), ByteBuffer::getLong);
+    }
+
+    /**
+     * @return a codec that writes Doubles as 8 bytes, for fixed-size collectors like
+     * {@link ToListCollectors#toOffHeapList(RecordCodec, int)}
+     */
+    static RecordCodec<Double> doubles() {
+        return of((d, buffer) -> buffer.putDouble(d), ByteBuffer::getDouble);
+    }
+
+    /**
+     * A codec that uses Java serialization, which works for any {@link Serializable} object but writes far more bytes,
+     * far more slowly, than a codec written for the type.
+     * @param <T> the type of object serialized
+     * @return a codec that uses {@link ObjectOutputStream} and {@link ObjectInputStream}
+     */
+    static <T extends Serializable> RecordCodec<T> serializable() {
+        return of((t, buffer) -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(t);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.put(bytes.toByteArray());
+        }, buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                @SuppressWarnings("unchecked")
+                T t = (T) in.readObject();
+                return t;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package org.hankster.functional.collectors;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes an object as a binary record, for collectors like {@link BinaryFileCollector} that write records without
+ * formatting them into Strings first.
+ * @param <T> the type of object serialized
+ */
+@FunctionalInterface
+public interface RecordSerializer<T> {
+
+    /**
+     * Writes a record into the buffer, starting at the buffer's position and advancing it past the record, e.g. with
+     * {@link ByteBuffer#putLong(long)}.  If the record doesn't fit, the buffer throws
+     * {@link java.nio.BufferOverflowException}, and the caller may make room and call this again with the same record,
+     * so a serializer should have no side effects other than writing to the buffer.
+     * @param record the object to serialize
+     * @param buffer the buffer to write into
+     */
+    void serialize(T record, ByteBuffer buffer);
+}
@@ -0,0 +1,166 @@
+package org.hankster.functional.collectors;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The {@link BufferedWriter} that a {@link WriterCollector} accumulates into.  It keeps its own buffer, and
+ * {@link #writeRecord(String)} copies a record and its terminator into the buffer under one acquisition of the lock,
+ * instead of the two locked calls of {@code write(s)} and {@code newLine()}.  The collector hands the same writer to
+ * every fork-join leaf, so every method that touches the buffer holds the lock, as BufferedWriter's do.
+ * {@link #newLine()} writes the record terminator rather than the platform's line separator.
+ */
+final class RecordWriter extends BufferedWriter {
+    static final int DEFAULT_SIZE = 8 << 10;
+
+    private final Writer out;
+    private final char[] buf;
+    private int count = 0;
+    private char[] terminator;
+    private boolean closed = false;
+
+    RecordWriter(Writer out, String terminator) {
+        super(out, 1);                          // the superclass's buffer is never used
+        this.out = out;
+        this.buf = new char[DEFAULT_SIZE];
+        this.terminator = terminator.toCharArray();
+    }
+
+    void setTerminator(String terminator) {
+        this.terminator = terminator.toCharArray();
+    }
+
+    /**
+     * Writes a record followed by the terminator.
+     * @param s the record
+     * @throws IOException if the writer beneath could not be written
+     */
+    void writeRecord(String s) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            append(s);
+        }
+    }
+
+    /**
+     * Writes each record in a batch followed by the terminator, under one acquisition of the lock.
+     * @param records the records
+     * @return the number of chars in the records, not counting terminators
+     * @throws IOException if the writer beneath could not be written
+     */
+    long writeRecords(Iterable<String> records) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            long chars = 0;
+            for (String s : records) {
+                append(s);
+                chars += s.length();
+            }
+            return chars;
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            if (count == buf.length) {
+                flushBuffer();
+            }
+            buf[count++] = (char) c;
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            if (len > buf.length - count) {
+                flushBuffer();
+                if (len > buf.length) {
+                    out.write(cbuf, off, len);
+                    return;
+                }
+            }
+            System.arraycopy(cbuf, off, buf, count, len);
+            count += len;
+        }
+    }
+
+    @Override
+    public void write(String s, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            if (len > buf.length - count) {
+                flushBuffer();
+                if (len > buf.length) {
+                    out.write(s, off, len);
+                    return;
+                }
+            }
+            s.getChars(off, off + len, buf, count);
+            count += len;
+        }
+    }
+
+    @Override
+    public void newLine() throws IOException {
+        write(terminator, 0, terminator.length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            flushBuffer();
+            super.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                flushBuffer();
+            } finally {
+                closed = true;
+                super.close();
+            }
+        }
+    }
+
+    // copies a record and its terminator into the buffer; the caller holds the lock
+    private void append(String s) throws IOException {
+        int len = s.length();
+        char[] t = terminator;
+        if (len + t.length > buf.length - count) {
+            flushBuffer();
+            if (len + t.length > buf.length) {
+                out.write(s);
+                out.write(t);
+                return;
+            }
+        }
+        s.getChars(0, len, buf, count);
+        count += len;
+        for (char c : t) {
+            buf[count++] = c;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+}
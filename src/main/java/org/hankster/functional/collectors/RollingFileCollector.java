@@ -0,0 +1,229 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Collector} that writes {@link Stream} contents as lines to a series of files, rolling over to the next file
+ * once the current one holds maxLines lines or at least maxBytes bytes.  Since a file is rolled over after the line
+ * that reaches maxBytes, a file can exceed maxBytes by less than one line.  The finisher returns the files that were
+ * written, in order.
+ * <p>
+ * Under a parallel stream, each fork-join leaf writes its own files concurrently, to temp files in the same directory
+ * as the first target file.  The combiner concatenates the leaves' lists of files in encounter order, and the finisher
+ * renames them to their targets, so the lines in the files are in encounter order.  The last file of each leaf can be
+ * short.  An empty upstream produces no files.  Existing files with the target names are replaced, but files left over
+ * from an earlier run that wrote more files are not deleted.
+ */
+public class RollingFileCollector implements Collector<String, RollingFileCollector.Part, List<Path>>, Closeable {
+
+    /** the size of the direct buffer each leaf encodes into */
+    static final int BUFFER_SIZE = 64 << 10;
+
+    private final IntFunction<Path> naming;
+    private final Charset cs;
+    private final long maxBytes;
+    private final long maxLines;
+    private final Path tempDir;
+    private final Queue<Part> parts = new ConcurrentLinkedQueue<>();        // every part created, so close() can clean up
+
+    /**
+     * Creates a Collector that takes the upstream strings and writes the strings as lines to a series of files.
+     * If the collector does not complete, (if, for instance, a RuntimeException is thrown), you will have to call
+     * close() on the collector to delete the temp files.
+     * @param naming returns the path of the nth file written, starting with 0, e.g.
+     *               {@code i -> dir.resolve(String.format("part-%05d.txt", i))}
+     * @param cs the character set to use
+     * @param maxBytes the number of bytes at which a file is rolled over, or {@link Long#MAX_VALUE} for no limit
+     * @param maxLines the most lines a file may hold, or {@link Long#MAX_VALUE} for no limit
+     */
+    public RollingFileCollector(IntFunction<Path> naming, Charset cs, long maxBytes, long maxLines) {
+        if (maxBytes <= 0 || maxLines <= 0) {
+            throw new IllegalArgumentException("maxBytes and maxLines must be positive: " + maxBytes + ", " + maxLines);
+        }
+        this.naming = naming;
+        this.cs = cs;
+        this.maxBytes = maxBytes;
+        this.maxLines = maxLines;
+        this.tempDir = naming.apply(0).toAbsolutePath().getParent();
+    }
+
+    @Override
+    public Supplier<Part> supplier() {
+        return () -> {
+            Part part = new Part();
+            parts.add(part);
+            return part;
+        };
+    }
+
+    @Override
+    public BiConsumer<Part, String> accumulator() {
+        return (part, s) -> {
+            try {
+                part.add(s);
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    // the right-hand part's files always follow the left-hand part's, so encounter order is preserved
+    @Override
+    public BinaryOperator<Part> combiner() {
+        return (left, right) -> {
+            try {
+                return left.append(right);
+            } catch (IOException e) {
+                closeAndThrow(e);
+                return left;
+            }
+        };
+    }
+
+    @Override
+    public Function<Part, List<Path>> finisher() {
+        return part -> {
+            List<Path> targets = new ArrayList<>();
+            try {
+                List<Path> temps = part.finish();
+                for (Path temp : temps) {
+                    Path target = naming.apply(targets.size());
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                    targets.add(target);
+                }
+                temps.clear();
+                close();
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+            return targets;
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.noneOf(Characteristics.class);
+    }
+
+    /**
+     * Closes any open files and deletes any temp files that have not been renamed to their targets.
+     * @throws IOException if a file could not be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (Part part; (part = parts.poll()) != null; ) {
+            try {
+                part.discard();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                } else {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    private void closeAndThrow(IOException e) {
+        try {
+            close();
+        } catch (IOException e2){
+            e.addSuppressed(e2);
+        }
+        throw new UncheckedIOException(e);
+    }
+
+    /**
+     * The per-leaf accumulation type of a {@link RollingFileCollector}: the temp files a leaf has written, in order,
+     * the last of which may still be open.
+     */
+    public final class Part {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final List<Path> files = new ArrayList<>();
+        private ChannelBufferSink sink = null;
+        private LineEncoder encoder = null;
+        private long lines = 0;
+
+        private Part() {}
+
+        void add(String s) throws IOException {
+            if (encoder != null && (lines >= maxLines || encoder.bytesEncoded() >= maxBytes)) {
+                closeFile();
+            }
+            if (encoder == null) {
+                openFile();
+            }
+            encoder.writeLine(s);
+            lines++;
+        }
+
+        Part append(Part right) throws IOException {
+            closeFile();
+            right.closeFile();
+            files.addAll(right.files);
+            right.files.clear();
+            return this;
+        }
+
+        List<Path> finish() throws IOException {
+            closeFile();
+            return files;
+        }
+
+        private void openFile() throws IOException {
+            Path temp = FileOptions.createUniqueFile(tempDir, "rolling", ".part");
+            files.add(temp);
+            sink = new ChannelBufferSink(FileChannel.open(temp, StandardOpenOption.WRITE));
+            ((Buffer) buffer).clear();              // cast to Buffer so this still runs on Java 8 when built with a newer javac
+            encoder = new LineEncoder(cs, System.lineSeparator(), sink, buffer);
+            lines = 0;
+        }
+
+        private void closeFile() throws IOException {
+            if (sink != null) {
+                try (ChannelBufferSink sinkRef = sink) {
+                    encoder.finish();
+                } finally {
+                    sink = null;
+                    encoder = null;
+                }
+            }
+        }
+
+        private void discard() throws IOException {
+            try {
+                if (sink != null) {
+                    sink.close();
+                }
+            } finally {
+                sink = null;
+                encoder = null;
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+                files.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputStream} that copies what is written to it into the buffers of a {@link BufferSink}, so the sinks can
+ * sit beneath the Writer chain of a {@link FileCollector}.  Closing the stream finishes and closes the sink.
+ */
+final class SinkOutputStream extends OutputStream {
+    private final BufferSink sink;
+    private ByteBuffer buffer;
+
+    /**
+     * @param sink where full buffers go
+     * @param buffer the first buffer to fill, in write mode
+     */
+    SinkOutputStream(BufferSink sink, ByteBuffer buffer) {
+        this.sink = sink;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            buffer = sink.drain(buffer);
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                buffer = sink.drain(buffer);
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            try (BufferSink sinkRef = sink) {
+                sink.finish(buffer);
+            } finally {
+                buffer = null;
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.hankster.functional.collectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The implementation of {@link ToListCollectors#toSizedList(Stream)}, which drives a stream's spliterator itself rather
+ * than going through a Collector, so that it can see the exact size of the stream and of each split of it.
+ */
+final class SizedLists {
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private SizedLists() {}
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> toList(Stream<T> stream) {
+        boolean parallel = stream.isParallel();
+        Spliterator<T> spliterator = stream.spliterator();
+        if (!parallel) {
+            return drain(spliterator);
+        }
+        long threshold = Math.max(spliterator.estimateSize() / (ForkJoinPool.getCommonPoolParallelism() << 2), 1);
+        long size = spliterator.getExactSizeIfKnown();
+        if (size >= 0 && size <= MAX_ARRAY_SIZE && spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
+            // every split knows where its elements go, so the leaves can fill one array between them.  An ArrayList
+            // can't be filled from several threads at once, so it takes one more copy, of the whole array in one go.
+            Object[] array = new Object[(int) size];
+            new Fill<>(spliterator, array, 0, threshold).invoke();
+            return new ArrayList<>(Arrays.asList((T[]) array));
+        }
+        List<ArrayList<T>> leaves = new Gather<>(spliterator, threshold).invoke();
+        int total = 0;
+        for (ArrayList<T> leaf : leaves) {
+            total += leaf.size();
+        }
+        ArrayList<T> list = new ArrayList<>(total);
+        for (ArrayList<T> leaf : leaves) {
+            list.addAll(leaf);
+        }
+        return list;
+    }
+
+    // an ArrayList of the spliterator's elements, allocated at the right size if the spliterator knows it
+    private static <T> ArrayList<T> drain(Spliterator<T> spliterator) {
+        long size = spliterator.getExactSizeIfKnown();
+        ArrayList<T> list = size >= 0 ? new ArrayList<>((int) Math.min(size, MAX_ARRAY_SIZE)) : new ArrayList<>();
+        spliterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    // fills array, from offset on, with the elements of a SUBSIZED spliterator
+    private static final class Fill<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Spliterator<T> spliterator;
+        private final Object[] array;
+        private final int offset;
+        private final long threshold;
+
+        Fill(Spliterator<T> spliterator, Object[] array, int offset, long threshold) {
+            this.spliterator = spliterator;
+            this.array = array;
+            this.offset = offset;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            Spliterator<T> prefix;
+            if (spliterator.estimateSize() > threshold && (prefix = spliterator.trySplit()) != null) {
+                int prefixSize = (int) prefix.getExactSizeIfKnown();
+                invokeAll(new Fill<>(prefix, array, offset, threshold),
+                        new Fill<>(spliterator, array, offset + prefixSize, threshold));
+            } else {
+                spliterator.forEachRemaining(new Consumer<T>() {
+                    int i = offset;
+
+                    @Override
+                    public void accept(T t) {
+                        array[i++] = t;
+                    }
+                });
+            }
+        }
+    }
+
+    // collects each leaf's elements into its own list, and returns the lists in encounter order
+    private static final class Gather<T> extends RecursiveTask<List<ArrayList<T>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Spliterator<T> spliterator;
+        private final long threshold;
+
+        Gather(Spliterator<T> spliterator, long threshold) {
+            this.spliterator = spliterator;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<ArrayList<T>> compute() {
+            Spliterator<T> prefix;
+            if (spliterator.estimateSize() > threshold && (prefix = spliterator.trySplit()) != null) {
+                Gather<T> left = new Gather<>(prefix, threshold);
+                left.fork();
+                List<ArrayList<T>> right = new Gather<>(spliterator, threshold).compute();
+                List<ArrayList<T>> leaves = left.join();
+                leaves.addAll(right);
+                return leaves;
+            }
+            List<ArrayList<T>> leaves = new ArrayList<>();
+            leaves.add(drain(spliterator));
+            return leaves;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@link Collector} that buffers {@link Stream} contents and returns a Stream of them, like
+ * {@link OtherCollectors#toStream()}, but that keeps only up to a budget of elements in memory and spills the rest to
+ * temp files, so an upstream that produces more than expected can't exhaust the heap.  The budget is a number of
+ * elements, or a number of bytes as estimated by a weigher.  It is shared by every fork-join leaf of a parallel stream,
+ * and may be overshot by one element per leaf.  Once a leaf starts spilling, the rest of its elements are spilled.
+ * <p>
+ * Spilled elements are written by a {@link RecordCodec} as length-prefixed records, like
+ * {@link BinaryFileCollector}'s.  The returned Stream reads the in-memory elements and the temp files lazily, in
+ * encounter order, and its size is known.  Closing the Stream deletes the temp files, so use it in a
+ * try-with-resources statement.  If the collector does not complete, (if, for instance, a RuntimeException is thrown),
+ * you will have to call close() on the collector to delete the temp files.  A collector can only be used once.
+ * @param <T> the type of elements
+ */
+public class SpillingStreamCollector<T> implements Collector<T, SpillingStreamCollector<T>.Part, Stream<T>>, Closeable {
+
+    /** the size of the direct buffer each spill file is written and read through */
+    static final int BUFFER_SIZE = 64 << 10;
+
+    private final RecordCodec<T> codec;
+    private final ToLongFunction<? super T> weigher;
+    private final AtomicLong budget;
+    private final Path tempDir;
+    private final Queue<Part> parts = new ConcurrentLinkedQueue<>();        // every part created, so close() can clean up
+
+    /**
+     * Creates a Collector that keeps up to maxInMemory elements in memory, and spills the rest to temp files in the
+     * default temp directory.
+     * @param codec writes spilled elements and reads them back
+     * @param maxInMemory the most elements to keep in memory
+     */
+    public SpillingStreamCollector(RecordCodec<T> codec, long maxInMemory) {
+        this(codec, maxInMemory, t -> 1, null);
+    }
+
+    /**
+     * Creates a Collector that keeps elements in memory until their weights add up to maxInMemory, and spills the rest
+     * to temp files.
+     * @param codec writes spilled elements and reads them back
+     * @param maxInMemory the most weight to keep in memory, e.g. a number of bytes
+     * @param weigher estimates the weight of each element, e.g. its size in bytes
+     * @param tempDir the directory for the temp files, or null for the default temp directory
+     */
+    public SpillingStreamCollector(RecordCodec<T> codec, long maxInMemory, ToLongFunction<? super T> weigher, Path tempDir) {
+        if (maxInMemory < 0) {
+            throw new IllegalArgumentException("maxInMemory must not be negative: " + maxInMemory);
+        }
+        this.codec = codec;
+        this.weigher = weigher;
+        this.budget = new AtomicLong(maxInMemory);
+        this.tempDir = tempDir;
+    }
+
+    @Override
+    public Supplier<Part> supplier() {
+        return () -> {
+            Part part = new Part();
+            parts.add(part);
+            return part;
+        };
+    }
+
+    @Override
+    public BiConsumer<Part, T> accumulator() {
+        return (part, t) -> {
+            try {
+                part.add(t);
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    // the right-hand part's segments always follow the left-hand part's, so encounter order is preserved
+    @Override
+    public BinaryOperator<Part> combiner() {
+        return (left, right) -> {
+            try {
+                return left.append(right);
+            } catch (IOException e) {
+                closeAndThrow(e);
+                return left;
+            }
+        };
+    }
+
+    // from here on, the stream owns the temp files
+    @Override
+    public Function<Part, Stream<T>> finisher() {
+        return part -> {
+            try {
+                part.finish();
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+            parts.clear();
+            return StreamSupport.stream(Spliterators.spliterator(part.iterator(), part.count(), Spliterator.ORDERED), false)
+                    .onClose(() -> {
+                        try {
+                            part.discard();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.noneOf(Characteristics.class);
+    }
+
+    /**
+     * Closes and deletes any temp files that have not been handed over to the returned Stream.
+     * @throws IOException if a file could not be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (Part part; (part = parts.poll()) != null; ) {
+            try {
+                part.discard();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                } else {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    private void closeAndThrow(IOException e) {
+        try {
+            close();
+        } catch (IOException e2){
+            e.addSuppressed(e2);
+        }
+        throw new UncheckedIOException(e);
+    }
+
+    /**
+     * The per-leaf accumulation type of a {@link SpillingStreamCollector}: the segments of elements a leaf has
+     * collected, in order, each either in memory or in a temp file.
+     */
+    public final class Part {
+        private final List<Segment> segments = new ArrayList<>();
+        private ArrayList<T> memory = null;     // the last segment, if it is in memory
+        private Spill spill = null;             // the last segment, if it is being spilled
+
+        private Part() {}
+
+        void add(T t) throws IOException {
+            if (spill == null && budget.get() > 0) {
+                budget.addAndGet(-weigher.applyAsLong(t));
+                if (memory == null) {
+                    memory = new ArrayList<>();
+                    segments.add(new InMemory(memory));
+                }
+                memory.add(t);
+            } else {
+                if (spill == null) {
+                    spill = new Spill();
+                    segments.add(spill);
+                    memory = null;
+                }
+                spill.write(t);
+            }
+        }
+
+        Part append(Part right) throws IOException {
+            finish();
+            right.finish();
+            segments.addAll(right.segments);
+            right.segments.clear();
+            return this;
+        }
+
+        void finish() throws IOException {
+            memory = null;
+            if (spill != null) {
+                spill.finish();
+                spill = null;
+            }
+        }
+
+        long count() {
+            long count = 0;
+            for (Segment segment : segments) {
+                count += segment.count();
+            }
+            return count;
+        }
+
+        Iterator<T> iterator() {
+            Iterator<Segment> it = segments.iterator();
+            return new Iterator<T>() {
+                Iterator<T> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext()) {
+                        if (!it.hasNext()) {
+                            return false;
+                        }
+                        current = it.next().iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+
+        private void discard() throws IOException {
+            IOException first = null;
+            for (Segment segment : segments) {
+                try {
+                    segment.discard();
+                } catch (IOException e) {
+                    if (first == null) {
+                        first = e;
+                    } else {
+                        first.addSuppressed(e);
+                    }
+                }
+            }
+            segments.clear();
+            memory = null;
+            spill = null;
+            if (first != null) {
+                throw first;
+            }
+        }
+    }
+
+    private abstract class Segment {
+
+        abstract long count();
+
+        abstract Iterator<T> iterator();
+
+        void discard() throws IOException {}
+    }
+
+    private final class InMemory extends Segment {
+        private final ArrayList<T> elements;
+
+        InMemory(ArrayList<T> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        long count() {
+            return elements.size();
+        }
+
+        @Override
+        Iterator<T> iterator() {
+            return elements.iterator();
+        }
+    }
+
+    // a temp file of length-prefixed records; casts to Buffer so this still runs on Java 8 when built with a newer javac
+    private final class Spill extends Segment {
+        private final Path file;
+        private ChannelBufferSink sink;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private ByteBuffer scratch = ByteBuffer.allocate(VarintFraming.INITIAL_SCRATCH_SIZE);
+        private FileChannel reader = null;
+        private long count = 0;
+
+        Spill() throws IOException {
+            this.file = tempDir == null ? Files.createTempFile("spill", ".bin") : Files.createTempFile(tempDir, "spill", ".bin");
+            try {
+                this.sink = new ChannelBufferSink(FileChannel.open(file, StandardOpenOption.WRITE));
+            } catch (IOException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+        }
+
+        void write(T t) throws IOException {
+            scratch = VarintFraming.serialize(codec, t, scratch);
+            buffer = VarintFraming.write(scratch, buffer, sink);
+            count++;
+        }
+
+        void finish() throws IOException {
+            try (ChannelBufferSink sinkRef = sink) {
+                sink.finish(buffer);
+            } finally {
+                sink = null;
+            }
+        }
+
+        @Override
+        long count() {
+            return count;
+        }
+
+        @Override
+        Iterator<T> iterator() {
+            try {
+                reader = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            ((Buffer) buffer).clear().limit(0);
+            return new Iterator<T>() {
+                long remaining = count;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                public T next() {
+                    if (remaining == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    try {
+                        T t = read();
+                        if (--remaining == 0) {
+                            reader.close();
+                        }
+                        return t;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+
+        private T read() throws IOException {
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = get();
+                length |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            if (buffer.remaining() >= length) {
+                ByteBuffer record = buffer.duplicate();
+                ((Buffer) record).limit(buffer.position() + length);
+                ((Buffer) buffer).position(buffer.position() + length);
+                return codec.deserialize(record);
+            }
+            if (scratch.capacity() < length) {
+                scratch = ByteBuffer.allocate(length);
+            }
+            ((Buffer) scratch).clear().limit(length);
+            while (scratch.hasRemaining()) {
+                if (!buffer.hasRemaining()) {
+                    fill();
+                }
+                int n = Math.min(scratch.remaining(), buffer.remaining());
+                int limit = buffer.limit();
+                ((Buffer) buffer).limit(buffer.position() + n);
+                scratch.put(buffer);
+                ((Buffer) buffer).limit(limit);
+            }
+            ((Buffer) scratch).flip();
+            return codec.deserialize(scratch);
+        }
+
+        private byte get() throws IOException {
+            if (!buffer.hasRemaining()) {
+                fill();
+            }
+            return buffer.get();
+        }
+
+        private void fill() throws IOException {
+            buffer.compact();
+            if (reader.read(buffer) < 0) {
+                throw new EOFException("spill file " + file + " is truncated");
+            }
+            ((Buffer) buffer).flip();
+        }
+
+        @Override
+        void discard() throws IOException {
+            try (ChannelBufferSink sinkRef = sink; FileChannel readerRef = reader) {
+
+            } finally {
+                sink = null;
+                reader = null;
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
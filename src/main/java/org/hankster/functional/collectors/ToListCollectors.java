@@ -1,8 +1,12 @@
 package org.hankster.functional.collectors;
 
 import java.util.*;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Additional collectors for collecting to Lists not found in {@link Collectors}
@@ -18,4 +22,121 @@ public interface ToListCollectors {
     static<T> Collector<T,?,List<T>> toList(int initialCapacity){
         return CollectorHelpers.toSizedStableOrderCollection(initialCapacity, ArrayList::new);
     }
-}
\ No newline at end of file
+
+    /**
+     * An alternative to {@link Collectors#toList()} for parallel streams.  Collectors.toList() combines the lists of
+     * two fork-join leaves with addAll, which copies the right-hand list into the left-hand one at every level of the
+     * tree, so each element may be copied once per level.  This collector instead buffers each leaf's elements in
+     * chunks that are linked together in constant time when leaves are combined, and copies each element just once, in
+     * the finisher, into an {@link ArrayList} of exactly the right size.  Sequential streams gain nothing from it.
+     * @param <T> the type of elements
+     * @return a modifiable ArrayList of the elements, in encounter order
+     */
+    static<T> Collector<T,?,List<T>> toListInParallel(){
+        return Collector.<T, ChunkedBuffer.OfRef<T>, List<T>>of(
+                ChunkedBuffer.OfRef::new,
+                ChunkedBuffer.OfRef::accept,
+                (b1, b2) -> {
+                    b1.append(b2);
+                    return b1;
+                },
+                ChunkedBuffer.OfRef::toArrayList);
+    }
+
+    /**
+     * Collects to an unmodifiable list that holds no spare capacity, for results that are kept around, e.g. in a
+     * cache, where the slack an {@link ArrayList} grows into would otherwise be retained for as long as the list is.
+     * The elements are buffered as for {@link #toListInParallel()} and copied once, in the finisher, into an array of
+     * exactly the right size.  Empty lists are all the same instance, and lists of one or two elements don't have an
+     * array at all.  Null elements are allowed.
+     * @param <T> the type of elements
+     * @return an unmodifiable List of the elements, in encounter order
+     */
+    static<T> Collector<T,?,List<T>> toImmutableList(){
+        return Collector.<T, ChunkedBuffer.OfRef<T>, List<T>>of(
+                ChunkedBuffer.OfRef::new,
+                ChunkedBuffer.OfRef::accept,
+                (b1, b2) -> {
+                    b1.append(b2);
+                    return b1;
+                },
+                b -> CompactList.of(b.toArray()));
+    }
+
+    /**
+     * Collects fixed-size records into an {@link OffHeapList}, which keeps them serialized in direct ByteBuffers
+     * outside the Java heap, so that hundreds of millions of small records don't have to be traced by the garbage
+     * collector.  The returned list is read-only; read it with {@link OffHeapList#stream()} rather than get() where
+     * possible.
+     * @param codec writes each element into recordSize bytes, and reads it back
+     * @param recordSize the number of bytes each record takes
+     * @param <T> the type of elements
+     * @throws IllegalArgumentException if recordSize isn't positive, or, during collection, if a record doesn't fit in
+     *                                  recordSize bytes
+     * @return an OffHeapList of the elements, in encounter order
+     */
+    static<T> Collector<T,?,OffHeapList<T>> toOffHeapList(RecordCodec<T> codec, int recordSize){
+        if (recordSize <= 0) {
+            throw new IllegalArgumentException("recordSize must be positive: " + recordSize);
+        }
+        return Collector.<T, OffHeapList.Builder<T>, OffHeapList<T>>of(
+                () -> new OffHeapList.Builder<>(codec, recordSize),
+                OffHeapList.Builder::accept,
+                OffHeapList.Builder::append,
+                OffHeapList.Builder::build);
+    }
+
+    /**
+     * Collects a stream into an {@link ArrayList} without the caller having to guess its size.  A Collector never sees
+     * its source, so this is a terminal operation in its own right: it reads the stream's spliterator, and if the size
+     * is known, as it is for a stream over a collection or a range that has only been mapped, it allocates the list at
+     * exactly that size.  A parallel stream is split as a Collector's would be.  If every split knows its size too, the
+     * leaves write straight into one array at their own offsets, which is then copied into the list in one bulk copy,
+     * as an ArrayList can't be filled by several threads at once; otherwise each leaf's list is sized to its split, and
+     * the leaves are concatenated once at the end rather than at every level of the fork-join tree.  Any onClose
+     * handlers of the stream are not run, just as with {@link Stream#collect}.
+     * @param stream the stream to collect, which is consumed
+     * @param <T> the type of elements
+     * @return a modifiable ArrayList of the elements, in encounter order
+     */
+    static<T> List<T> toSizedList(Stream<T> stream){
+        return SizedLists.toList(stream);
+    }
+
+    /**
+     * Collects an int from each element into an {@link IntArrayList}, which stores them unboxed.  To collect an
+     * IntStream, use {@code intStream.collect(IntArrayList::new, IntArrayList::addInt, IntArrayList::addAll)}.
+     * @param mapper returns the int to collect from each element
+     * @param <T> the type of elements
+     * @return an IntArrayList of the mapped values, in encounter order
+     */
+    static<T> Collector<T,?,IntArrayList> toIntList(ToIntFunction<? super T> mapper){
+        return Collector.of(IntArrayList::new, (list, t) -> list.addInt(mapper.applyAsInt(t)),
+                (list1, list2) -> { list1.addAll(list2); return list1; });
+    }
+
+    /**
+     * Collects a long from each element into a {@link LongArrayList}, which stores them unboxed.  To collect a
+     * LongStream, use {@code longStream.collect(LongArrayList::new, LongArrayList::addLong, LongArrayList::addAll)}.
+     * @param mapper returns the long to collect from each element
+     * @param <T> the type of elements
+     * @return a LongArrayList of the mapped values, in encounter order
+     */
+    static<T> Collector<T,?,LongArrayList> toLongList(ToLongFunction<? super T> mapper){
+        return Collector.of(LongArrayList::new, (list, t) -> list.addLong(mapper.applyAsLong(t)),
+                (list1, list2) -> { list1.addAll(list2); return list1; });
+    }
+
+    /**
+     * Collects a double from each element into a {@link DoubleArrayList}, which stores them unboxed.  To collect a
+     * DoubleStream, use
+     * {@code doubleStream.collect(DoubleArrayList::new, DoubleArrayList::addDouble, DoubleArrayList::addAll)}.
+     * @param mapper returns the double to collect from each element
+     * @param <T> the type of elements
+     * @return a DoubleArrayList of the mapped values, in encounter order
+     */
+    static<T> Collector<T,?,DoubleArrayList> toDoubleList(ToDoubleFunction<? super T> mapper){
+        return Collector.of(DoubleArrayList::new, (list, t) -> list.addDouble(mapper.applyAsDouble(t)),
+                (list1, list2) -> { list1.addAll(list2); return list1; });
+    }
+}
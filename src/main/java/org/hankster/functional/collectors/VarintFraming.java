@@ -0,0 +1,80 @@
+package org.hankster.functional.collectors;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Frames binary records by preceding each with its length as an unsigned LEB128 varint, the encoding protocol buffers
+ * use.  Shared by {@link BinaryFileCollector}'s length-prefixed records and {@link SpillingStreamCollector}'s spill
+ * files.  Casts to Buffer so this still runs on Java 8 when built with a newer javac.
+ */
+final class VarintFraming {
+    static final int INITIAL_SCRATCH_SIZE = 4 << 10;
+    static final int MAX_VARINT_BYTES = 5;
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private VarintFraming() {}
+
+    /**
+     * Serializes a record into the scratch buffer, growing it until the record fits.
+     * @param serializer writes the record
+     * @param t the object to serialize
+     * @param scratch the buffer to serialize into
+     * @param <T> the type of object serialized
+     * @return the scratch buffer, or a bigger one, in read mode, holding just the record
+     * @throws IllegalArgumentException if the record doesn't fit in the biggest buffer there can be
+     */
+    static <T> ByteBuffer serialize(RecordSerializer<? super T> serializer, T t, ByteBuffer scratch) {
+        return serialize(serializer, t, scratch, MAX_ARRAY_SIZE);
+    }
+
+    // as above, growing the scratch buffer to no more than maxSize bytes
+    static <T> ByteBuffer serialize(RecordSerializer<? super T> serializer, T t, ByteBuffer scratch, int maxSize) {
+        for (;;) {
+            ((Buffer) scratch).clear();
+            try {
+                serializer.serialize(t, scratch);
+                break;
+            } catch (BufferOverflowException e) {
+                if (scratch.capacity() >= maxSize) {
+                    throw new IllegalArgumentException("record larger than " + maxSize + " bytes", e);
+                }
+                scratch = ByteBuffer.allocate((int) Math.min(maxSize, (long) scratch.capacity() << 1));
+            }
+        }
+        ((Buffer) scratch).flip();
+        return scratch;
+    }
+
+    /**
+     * Writes a record's length and then the record, draining the buffer to the sink whenever it fills up.
+     * @param record the record, in read mode; it is consumed
+     * @param buffer the buffer to write into, in write mode
+     * @param sink where full buffers go
+     * @return the buffer to keep writing into
+     * @throws IOException if the sink could not write a buffer
+     */
+    static ByteBuffer write(ByteBuffer record, ByteBuffer buffer, BufferSink sink) throws IOException {
+        int length = record.remaining();
+        if (buffer.remaining() < MAX_VARINT_BYTES) {
+            buffer = sink.drain(buffer);
+        }
+        for (; (length & ~0x7f) != 0; length >>>= 7) {
+            buffer.put((byte) ((length & 0x7f) | 0x80));
+        }
+        buffer.put((byte) length);
+        while (record.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                buffer = sink.drain(buffer);
+            }
+            int n = Math.min(record.remaining(), buffer.remaining());
+            int limit = record.limit();
+            ((Buffer) record).limit(record.position() + n);
+            buffer.put(record);
+            ((Buffer) record).limit(limit);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,91 @@
+package org.hankster.functional.collectors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the work a {@link FileCollector} or {@link OutputCollector} has done, for telling whether a slow
+ * write is bound by encoding or by the output stream beneath it.  See {@link WriterCollector#withMetrics(java.util.function.Consumer)}.
+ */
+public final class WriteMetrics {
+    private final long lines;
+    private final long chars;
+    private final long bytes;
+    private final long writes;
+    private final long flushes;
+    private final long writeNanos;
+    private final long encodeNanos;
+
+    WriteMetrics(long lines, long chars, long bytes, long writes, long flushes, long writeNanos, long encodeNanos) {
+        this.lines = lines;
+        this.chars = chars;
+        this.bytes = bytes;
+        this.writes = writes;
+        this.flushes = flushes;
+        this.writeNanos = writeNanos;
+        this.encodeNanos = encodeNanos;
+    }
+
+    /**
+     * @return the number of lines written
+     */
+    public long lines() {
+        return lines;
+    }
+
+    /**
+     * @return the number of chars written, not counting line separators
+     */
+    public long chars() {
+        return chars;
+    }
+
+    /**
+     * @return the number of encoded bytes handed to the output stream, including line separators.  For a compressed
+     * file, this is the size before compression.
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of times encoded bytes were written to the output stream, which is about bytes divided by the
+     * size of the buffers above it
+     */
+    public long writes() {
+        return writes;
+    }
+
+    /**
+     * @return the number of times the output stream was flushed
+     */
+    public long flushes() {
+        return flushes;
+    }
+
+    /**
+     * @return the nanoseconds spent blocked writing, flushing and closing the output stream, which includes
+     * compressing, waiting for an async writer thread to free a buffer, and forcing a durable file
+     */
+    public long writeNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * @return the nanoseconds spent buffering and encoding lines, not counting {@link #writeNanos()}
+     */
+    public long encodeNanos() {
+        return encodeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteMetrics{lines=" + lines
+                + ", chars=" + chars
+                + ", bytes=" + bytes
+                + ", writes=" + writes
+                + ", flushes=" + flushes
+                + ", writeMillis=" + TimeUnit.NANOSECONDS.toMillis(writeNanos)
+                + ", encodeMillis=" + TimeUnit.NANOSECONDS.toMillis(encodeNanos)
+                + '}';
+    }
+}
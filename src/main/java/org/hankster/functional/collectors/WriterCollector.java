@@ -0,0 +1,219 @@
+package org.hankster.functional.collectors;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * The machinery shared by the {@link Collector}s that write {@link Stream} contents as records through a chain of
+ * writers to an {@link OutputStream}: {@link FileCollector} and {@link OutputCollector}.  The subclass opens the stream
+ * and decides what the finisher returns.  Every thread shares the same writer, so these are meant for sequential
+ * streams.
+ * @param <R> the result type of the collector
+ */
+public abstract class WriterCollector<R> implements Collector<String, BufferedWriter, R>, Closeable {
+
+    OutputStream out = null;
+    OutputStreamWriter osWriter = null;
+    RecordWriter writer = null;
+    MeteredOutputStream meter = null;
+    Consumer<? super WriteMetrics> metricsListener = null;
+    // added to by every leaf of a parallel stream, outside the writer's lock
+    final LongAdder lines = new LongAdder();
+    final LongAdder chars = new LongAdder();
+    final LongAdder writerNanos = new LongAdder();      // time spent in the writers, which includes the meter's time
+
+    WriterCollector() {}
+
+    /**
+     * Turns on counting of lines, chars, bytes, writes and flushes, and timing of encoding and writing, and registers a
+     * listener that is handed the final {@link WriteMetrics} once the target is closed by the finisher.  Counting costs
+     * two calls to {@link System#nanoTime()} per line; without it, the only cost is a branch per line.  Call this
+     * before the collector is used.
+     * @param listener receives the metrics when the collector finishes
+     * @return this collector
+     */
+    public WriterCollector<R> withMetrics(Consumer<? super WriteMetrics> listener) {
+        if (writer == null) {
+            throw new IllegalStateException("collector is closed");
+        }
+        meter.enabled = true;
+        metricsListener = listener;
+        return this;
+    }
+
+    /**
+     * Sets what is written after each string, instead of the platform's line separator, e.g. {@code "\n"},
+     * {@code "\r\n"}, {@code "\0"} for null-delimited records, or {@code ""} for none.  Each string and its terminator
+     * are copied into the buffer together, in one call.  Call this before the collector is used.
+     * @param terminator the record terminator
+     * @return this collector
+     */
+    public WriterCollector<R> withRecordTerminator(String terminator) {
+        if (writer == null) {
+            throw new IllegalStateException("collector is closed");
+        }
+        writer.setTerminator(terminator);
+        return this;
+    }
+
+    /**
+     * Returns a snapshot of the metrics so far.  Reading them from another thread while lines are being written gives
+     * approximate values.
+     * @return the metrics, or null if {@link #withMetrics(Consumer)} was not called
+     */
+    public WriteMetrics metrics() {
+        if (metricsListener == null) {
+            return null;
+        }
+        return new WriteMetrics(lines.sum(), chars.sum(), meter.bytes, meter.writes, meter.flushes, meter.nanos,
+                writerNanos.sum() - meter.nanos);
+    }
+
+    @Override
+    public Supplier<BufferedWriter> supplier() {
+        return () -> writer;
+    }
+
+    @Override
+    public BiConsumer<BufferedWriter, String> accumulator() {
+        return (wr, s) -> {
+            try {
+                if (metricsListener == null) {
+                    ((RecordWriter) wr).writeRecord(s);
+                } else {
+                    long start = System.nanoTime();
+                    ((RecordWriter) wr).writeRecord(s);
+                    writerNanos.add(System.nanoTime() - start);
+                    lines.increment();
+                    chars.add(s.length());
+                }
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+        };
+    }
+
+    /**
+     * Returns a view of this collector that takes batches of strings, for upstreams that already produce them, and
+     * writes every string in a batch as a line, in a single call, instead of one accumulator call per string.  It
+     * shares this collector's target and settings, so use either it or this collector, not both.
+     * @return a collector that collects batches of Strings to this collector's target
+     */
+    public Collector<Collection<String>, BufferedWriter, R> batches() {
+        return Collector.of(supplier(), this::writeBatch, combiner(), finisher());
+    }
+
+    /**
+     * Returns a view of this collector that takes arrays of strings, like {@link #batches()}.
+     * @return a collector that collects arrays of Strings to this collector's target
+     */
+    public Collector<String[], BufferedWriter, R> arrays() {
+        return Collector.of(supplier(), (wr, batch) -> writeBatch(wr, Arrays.asList(batch)), combiner(), finisher());
+    }
+
+    private void writeBatch(BufferedWriter wr, Collection<String> batch) {
+        try {
+            if (metricsListener == null) {
+                ((RecordWriter) wr).writeRecords(batch);
+            } else {
+                long start = System.nanoTime();
+                chars.add(((RecordWriter) wr).writeRecords(batch));
+                writerNanos.add(System.nanoTime() - start);
+                lines.add(batch.size());
+            }
+        } catch (IOException e) {
+            closeAndThrow(e);
+        }
+    }
+
+    // supplier will always return the single instance, so combining is simple--just pick one and return it
+    @Override
+    public BinaryOperator<BufferedWriter> combiner() {
+        return (bw1, bw2) -> bw1;
+    }
+
+    @Override
+    public Function<BufferedWriter, R> finisher() {
+        return bw -> {
+            long start = System.nanoTime();
+            R result = null;
+            try {
+                result = finish();
+            } catch (IOException e) {
+                closeAndThrow(e);
+            }
+            if (metricsListener != null) {
+                writerNanos.add(System.nanoTime() - start);
+                metricsListener.accept(metrics());
+            }
+            return result;
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return EnumSet.noneOf(Characteristics.class);
+    }
+
+    /**
+     * Flushes and closes the writers and the stream beneath them.
+     * @throws IOException if the stream could not be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        closeWriters();
+    }
+
+    /**
+     * Closes the writers, and whatever else has to be done to complete the output, for the finisher.
+     * @return what the collector returns
+     * @throws IOException if the output could not be completed
+     */
+    abstract R finish() throws IOException;
+
+    // builds the writers over out, with the meter and then the buffer, if any, between them, so that the meter sees
+    // the writes that actually reach out
+    void openWriters(Charset cs, BufferSizing sizing) {
+        this.meter = new MeteredOutputStream(out);
+        this.out = sizing == BufferSizing.DEFAULT ? meter : new AdaptiveOutputStream(meter, sizing);
+        this.osWriter = new OutputStreamWriter(out, cs.newEncoder());
+        this.writer = new RecordWriter(osWriter, System.lineSeparator());
+    }
+
+    void closeWriters() throws IOException {
+        // use try-with-resources to assure that all get closed.  Resources are closed in reverse order, so the writer
+        // is declared last, to be closed first, while it can still flush to the streams beneath it.
+        try(
+                OutputStream outRef = out;
+                OutputStreamWriter osWriterRef = osWriter;
+                RecordWriter writerRef = writer;
+        ){
+
+        } finally {
+            osWriter = null;
+            writer = null;
+            out = null;
+        }
+    }
+
+    void closeAndThrow(IOException e) {
+        try {
+            close();
+        } catch (IOException e2){
+            e.addSuppressed(e2);
+        }
+        throw new UncheckedIOException(e);
+    }
+}
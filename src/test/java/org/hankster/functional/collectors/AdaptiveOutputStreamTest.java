@@ -0,0 +1,93 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class AdaptiveOutputStreamTest {
+
+    @Test
+    public void testGrowsWithinBounds() throws Exception {
+        // given random bytes, written in pieces of random sizes, some bigger than the buffer
+        byte[] data = new byte[4 << 20];
+        Random random = new Random(42);
+        random.nextBytes(data);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        AdaptiveOutputStream out = new AdaptiveOutputStream(target, BufferSizing.adaptive(1 << 10, 64 << 10));
+
+        // when the bytes are written
+        for (int off = 0; off < data.length; ) {
+            int len = Math.min(data.length - off, random.nextInt(4 << 10));
+            out.write(data, off, len);
+            off += len;
+            assertTrue(out.bufferSize() >= 1 << 10 && out.bufferSize() <= 64 << 10);
+        }
+        out.close();
+
+        // every byte arrives, in order
+        assertArrayEquals(data, target.toByteArray());
+    }
+
+    @Test
+    public void testFixedNeverGrows() throws Exception {
+        // given a fixed size buffer
+        AdaptiveOutputStream out = new AdaptiveOutputStream(new ByteArrayOutputStream(), BufferSizing.fixed(1 << 10));
+
+        // when many buffers' worth are written, one byte at a time
+        for (int i = 0; i < 100 << 10; i++) {
+            out.write(i);
+        }
+
+        // the buffer keeps its size
+        assertThat(out.bufferSize(), is(1 << 10));
+    }
+
+    @Test
+    public void testGrowsBehindAWriter() throws Exception {
+        // given a target where every write takes the same 2 milliseconds, however big, so bigger writes are faster.  It
+        // sleeps rather than spins, so that on a single core the JIT compiler doesn't stretch some writes more than
+        // others, and it only counts the bytes, as growing a ByteArrayOutputStream would add to the time of some writes
+        AtomicLong bytes = new AtomicLong();
+        OutputStream target = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                bytes.addAndGet(len);
+            }
+        };
+        AdaptiveOutputStream out = new AdaptiveOutputStream(target, BufferSizing.adaptive(1 << 10, 64 << 10));
+
+        // when 4 MB of chars are written through a writer, which hands the stream 8K chunks
+        char[] line = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcde\n".toCharArray();
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.US_ASCII)) {
+            for (int i = 0; i < (4 << 20) / line.length; i++) {
+                writer.write(line);
+            }
+        }
+
+        // the buffer grows all the way, even though it started smaller than the writer's chunks, and no byte is lost
+        assertThat(out.bufferSize(), is(64 << 10));
+        assertThat(bytes.get(), is(4L << 20));
+    }
+}
@@ -0,0 +1,46 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class AsyncBufferSinkTest {
+
+    @Test
+    public void testWriterThreadFailureIsRethrown() throws Exception {
+        // given a channel that always fails
+        WritableByteChannel failing = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        // when buffers are handed to the writer thread
+        try (AsyncBufferSink sink = new AsyncBufferSink(failing, 2, 16, "test writer")) {
+            ByteBuffer bb = sink.first();
+            bb.put((byte) 1);
+            bb = sink.drain(bb);
+            bb.put((byte) 2);
+            sink.finish(bb);
+            fail("expected an IOException");
+        } catch (IOException e) {
+            // the writer thread's exception is the cause of the exception thrown on the filling thread
+            assertThat(e.getCause().getMessage(), is("disk full"));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class BinaryFileCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFixedWidth() throws Exception {
+        // given the data, more than fits in the buffer at once
+        Path dest = folder.getRoot().toPath().resolve("longs.bin");
+
+        // when the collector is tested
+        LongStream.range(0, 200_000).boxed().collect(OtherCollectors.toFixedWidthFile(dest, 8, (Long l, ByteBuffer bb) -> bb.putLong(l)));
+
+        // every record is there, in order
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(dest));
+        assertThat(bytes.remaining(), is(200_000 * 8));
+        for (long l = 0; l < 200_000; l++) {
+            assertThat(bytes.getLong(), is(l));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFixedWidthRejectsShortRecords() throws Exception {
+        Path dest = folder.getRoot().toPath().resolve("short.bin");
+        LongStream.range(0, 1).boxed().collect(OtherCollectors.toFixedWidthFile(dest, 8, (Long l, ByteBuffer bb) -> bb.putInt(l.intValue())));
+    }
+
+    @Test
+    public void testLengthPrefixed() throws Exception {
+        // given the data, with records long enough to need multi-byte lengths and to outgrow the scratch buffer
+        Path dest = folder.getRoot().toPath().resolve("strings.bin");
+        List<String> expected = IntStream.range(0, 300).mapToObj(i -> new String(new char[i * 50]).replace('\0', 'x')).collect(Collectors.toList());
+
+        // when the collector is tested
+        expected.stream().collect(OtherCollectors.toLengthPrefixedFile(dest, (String s, ByteBuffer bb) -> bb.put(s.getBytes(StandardCharsets.UTF_8))));
+
+        // every record can be read back using its length
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(dest));
+        List<String> actual = new ArrayList<>();
+        while (bytes.hasRemaining()) {
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes.get();
+                length |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            byte[] record = new byte[length];
+            bytes.get(record);
+            actual.add(new String(record, StandardCharsets.UTF_8));
+        }
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void testScratchGrowthIsCapped() throws Exception {
+        // given a cap that isn't a power of two times the scratch buffer's size
+        int maxSize = 100_000;
+        ByteBuffer scratch = ByteBuffer.allocate(VarintFraming.INITIAL_SCRATCH_SIZE);
+
+        // when a record needs exactly the cap, the scratch buffer grows to it rather than past it
+        ByteBuffer record = VarintFraming.serialize((Integer n, ByteBuffer bb) -> bb.put(new byte[n]), maxSize, scratch, maxSize);
+        assertThat(record.remaining(), is(maxSize));
+        assertThat(record.capacity(), is(maxSize));
+
+        // and a serializer that never fits is rejected once the cap is reached, instead of growing forever
+        try {
+            VarintFraming.serialize((Integer n, ByteBuffer bb) -> { throw new BufferOverflowException(); }, 0, scratch, maxSize);
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("record larger than 100000 bytes"));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.*;
+
+public class ChannelFileCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameBytesAsFileCollector() throws Exception {
+        // given the data, with lines longer than the buffer and chars that need 1 to 4 bytes in UTF-8
+        List<String> utf8Lines = lines("aé€😀");
+        List<String> latin1Lines = lines("aé");
+        List<String> asciiLines = lines("a");
+
+        // the output is the same as FileCollector's for the hand-encoded charsets and for one that uses a CharsetEncoder
+        assertSameBytes(utf8Lines, StandardCharsets.UTF_8);
+        assertSameBytes(latin1Lines, StandardCharsets.ISO_8859_1);
+        assertSameBytes(asciiLines, StandardCharsets.US_ASCII);
+        assertSameBytes(utf8Lines, StandardCharsets.UTF_16);
+    }
+
+    @Test
+    public void testUnmappableCharacter() throws Exception {
+        // given a char that US-ASCII can't encode
+        Path dest = folder.getRoot().toPath().resolve("ascii.txt");
+
+        // when the collector is tested
+        try {
+            Stream.of("abc", "é").collect(new ChannelFileCollector(dest, StandardCharsets.US_ASCII));
+            fail("expected an UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            // the error is reported the way a CharsetEncoder would report it
+            assertThat(e.getCause(), instanceOf(UnmappableCharacterException.class));
+        }
+    }
+
+    private List<String> lines(String chars) {
+        return IntStream.range(0, 2_000)
+                .mapToObj(i -> {
+                    StringBuilder sb = new StringBuilder();
+                    for (int j = 0; j < i; j++) {
+                        sb.append(chars);
+                    }
+                    return sb.toString();
+                })
+                .collect(Collectors.toList());
+    }
+
+    private void assertSameBytes(List<String> lines, Charset cs) throws Exception {
+        Path expected = folder.newFile().toPath();
+        Path actual = folder.newFile().toPath();
+        lines.stream().collect(new FileCollector(expected, cs));
+        lines.stream().collect(new ChannelFileCollector(actual, cs, ChannelFileCollector.MIN_BUFFER_SIZE));
+        assertArrayEquals(cs.name(), Files.readAllBytes(expected), Files.readAllBytes(actual));
+    }
+}
@@ -0,0 +1,105 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class ChunkedBufferTest {
+
+    @Test
+    public void testPrimitiveStreams() {
+        // given the data
+        int[] expected = IntStream.range(0, 1_000_000).map(i -> i * 7).toArray();
+
+        // when the collectors are tested, sequentially and in parallel
+        int[] ints = IntStream.of(expected).boxed().collect(OtherCollectors.toIntStream(Integer::intValue)).toArray();
+        int[] parallelInts = IntStream.of(expected).boxed().parallel().collect(OtherCollectors.toIntStream(Integer::intValue)).toArray();
+        long[] longs = IntStream.of(expected).boxed().parallel().collect(OtherCollectors.toLongStream(i -> (long) i)).parallel().toArray();
+        double[] doubles = IntStream.of(expected).boxed().collect(OtherCollectors.toDoubleStream(i -> i / 2.0)).parallel().toArray();
+
+        // every element comes back, in order
+        assertArrayEquals(expected, ints);
+        assertArrayEquals(expected, parallelInts);
+        assertArrayEquals(IntStream.of(expected).asLongStream().toArray(), longs);
+        assertArrayEquals(IntStream.of(expected).mapToDouble(i -> i / 2.0).toArray(), doubles, 0.0);
+    }
+
+    @Test
+    public void testSplitsEvenly() {
+        // given buffers that were filled separately and appended, so the chunks are of uneven sizes
+        ChunkedBuffer.OfLong buffer = new ChunkedBuffer.OfLong();
+        long next = 0;
+        for (int part = 0; part < 10; part++) {
+            ChunkedBuffer.OfLong right = new ChunkedBuffer.OfLong();
+            for (int i = 0; i < 1_000 * part + 3; i++) {
+                right.accept(next++);
+            }
+            buffer.append(right);
+        }
+
+        // when the spliterator is split
+        Spliterator.OfLong spliterator = buffer.spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        Spliterator.OfLong prefix = spliterator.trySplit();
+
+        // the halves are the same size, and between them hold every element in order
+        assertThat(prefix.getExactSizeIfKnown(), is(next / 2));
+        assertThat(spliterator.getExactSizeIfKnown(), is(next - next / 2));
+        long[] expected = LongStream.range(0, next).toArray();
+        long[] actual = LongStream.concat(
+                StreamSupport.longStream(prefix, false),
+                StreamSupport.longStream(spliterator, true)).toArray();
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testToStreamIsSizedAndSplittable() {
+        // given the data
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "element " + i).collect(Collectors.toList());
+
+        // when the collector is tested
+        Stream<String> stream = expected.parallelStream().collect(OtherCollectors.toStream());
+        Spliterator<String> spliterator = stream.spliterator();
+
+        // the stream knows its size, and splits in half
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        assertThat(spliterator.getExactSizeIfKnown(), is(100_000L));
+        Spliterator<String> prefix = spliterator.trySplit();
+        assertThat(prefix.getExactSizeIfKnown(), is(50_000L));
+
+        // and a parallel stage over it sees every element in order
+        List<String> actual = Stream.concat(StreamSupport.stream(prefix, true), StreamSupport.stream(spliterator, true))
+                .map(String::toUpperCase)
+                .collect(Collectors.toList());
+        assertThat(actual, is(expected.stream().map(String::toUpperCase).collect(Collectors.toList())));
+    }
+
+    @Test
+    public void testAppendLinksChunks() {
+        // given two partly filled buffers
+        ChunkedBuffer.OfRef<Integer> left = new ChunkedBuffer.OfRef<>();
+        ChunkedBuffer.OfRef<Integer> right = new ChunkedBuffer.OfRef<>();
+        IntStream.range(0, 100).forEach(left::accept);
+        IntStream.range(100, 250).forEach(right::accept);
+        int leftChunks = left.chunkCount;
+        ChunkedBuffer.Chunk<Object[]> rightHead = right.head;
+
+        // when one is appended to the other, and more is added
+        left.append(right);
+        IntStream.range(250, 300).forEach(left::accept);
+
+        // the right-hand chunks are linked in, not copied, and every element is there in order
+        assertThat(leftChunks, is(3));
+        assertSame(rightHead, left.head.next.next.next);
+        assertThat(left.build().collect(Collectors.toList()), is(IntStream.range(0, 300).boxed().collect(Collectors.toList())));
+    }
+}
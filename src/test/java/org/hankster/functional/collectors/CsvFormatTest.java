@@ -0,0 +1,98 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class CsvFormatTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testQuotingAndEscaping() throws Exception {
+        // given the data, with fields that need quoting and fields that don't
+        Path dest = folder.getRoot().toPath().resolve("out.csv");
+        CsvFormat<Object[]> format = CsvFormat.<Object[]>csv()
+                .column("text", a -> a[0])
+                .column("number", a -> a[1])
+                .column("flag", a -> a[2])
+                .withHeader();
+
+        // when the collector is tested
+        Stream.of(
+                new Object[]{"plain", 42, true},
+                new Object[]{"a,b", -1L, false},
+                new Object[]{"say \"hi\"", 1.5, null},
+                new Object[]{null, null, ','})
+                .collect(OtherCollectors.toCsvFile(dest, StandardCharsets.UTF_8, format));
+
+        // the header comes first, and fields are quoted and escaped as RFC 4180 describes
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(Arrays.asList(
+                "text,number,flag",
+                "plain,42,true",
+                "\"a,b\",-1,false",
+                "\"say \"\"hi\"\"\",1.5,",
+                ",,\",\"")));
+    }
+
+    @Test
+    public void testParallelTsv() throws Exception {
+        // given the data
+        Path dest = folder.getRoot().toPath().resolve("out.tsv");
+        CsvFormat<Integer> format = CsvFormat.<Integer>tsv()
+                .column("n", i -> i)
+                .column("text", i -> "x\t" + i)
+                .withHeader();
+
+        // when the collector is tested
+        IntStream.range(0, 100_000).boxed().parallel().collect(OtherCollectors.toCsvFileInParallel(dest, StandardCharsets.UTF_8, format));
+
+        // the header comes first, and the records are in encounter order
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> i + "\t\"x\t" + i + "\"").collect(Collectors.toList());
+        expected.add(0, "n\ttext");
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(expected));
+    }
+
+    @Test
+    public void testParallelAbort() throws Exception {
+        // given records long enough for a shard to spill to a temp file before the upstream fails
+        Path dest = folder.getRoot().toPath().resolve("abort.tsv");
+        String padding = String.join("", Collections.nCopies(200, "x"));
+        CsvFormat<Integer> format = CsvFormat.<Integer>tsv()
+                .column("n", i -> i)
+                .column("text", i -> padding);
+        CsvFileCollector<Integer, ?> collector = OtherCollectors.toCsvFileInParallel(dest, StandardCharsets.UTF_8, format);
+
+        // when the upstream fails part way through, and the collector is closed
+        try {
+            IntStream.range(0, 100_000).boxed().map(i -> {
+                if (i == 90_000) {
+                    throw new IllegalStateException("upstream failed");
+                }
+                return i;
+            }).collect(collector);
+            fail("expected the upstream to fail");
+        } catch (IllegalStateException e) {
+            collector.close();
+        }
+
+        // no temp files are left behind
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertThat(files.filter(f -> f.toString().endsWith(".shard")).count(), is(0L));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class FileCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testToFile() throws Exception {
+        // given the data
+        Path dest = folder.getRoot().toPath().resolve("out.txt");
+        List<String> expected = IntStream.range(0, 1_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+
+        // when the collector is tested
+        Path path = expected.stream().collect(OtherCollectors.toFile(dest));
+
+        // collector returns the path it wrote, and no data is lost
+        assertThat(path, is(dest));
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(expected));
+    }
+
+    @Test
+    public void testToFileInParallel() throws Exception {
+        // given the data
+        Path dest = folder.getRoot().toPath().resolve("parallel.txt");
+        List<String> expected = IntStream.range(0, 200_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+
+        // when every leaf of a parallel stream writes to the same collector
+        expected.parallelStream().collect(OtherCollectors.toFile(dest));
+
+        // every line is written whole, though not in order
+        List<String> lines = Files.readAllLines(dest, StandardCharsets.UTF_8);
+        Collections.sort(lines);
+        assertThat(lines, is(expected.stream().sorted().collect(Collectors.toList())));
+    }
+
+    @Test
+    public void testToFileAsync() throws Exception {
+        // given the data, and buffers small enough that the writer thread gets plenty of them
+        Path dest = folder.getRoot().toPath().resolve("async.txt");
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+
+        // when the collector is tested
+        Path path = expected.stream().collect(OtherCollectors.toFileAsync(dest, 3, 4096));
+
+        // collector returns the path it wrote, and no data is lost
+        assertThat(path, is(dest));
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(expected));
+    }
+
+    @Test
+    public void testToFileAsyncRejectsEmptyBuffers() throws Exception {
+        // given a file
+        Path dest = folder.getRoot().toPath().resolve("async.txt");
+
+        // when buffers of no bytes are asked for
+        try {
+            OtherCollectors.toFileAsync(dest, 2, 0);
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // the collector is rejected instead of spinning on a buffer that can never hold a byte
+            assertThat(e.getMessage(), is("bufferSize must be at least 1: 0"));
+        }
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        // given the data, enough of it for the parallel compressor to deflate many blocks
+        List<String> expected = IntStream.range(0, 200_000).mapToObj(i -> "line " + i + " of " + (i % 97)).collect(Collectors.toList());
+
+        for (Compression compression : Compression.values()) {
+            // when the collector is tested
+            Path dest = folder.getRoot().toPath().resolve(compression + ".txt.gz");
+            expected.stream().collect(OtherCollectors.toFile(dest, compression));
+
+            // no data is lost, and the compressed file can be read by a plain gzip reader
+            List<String> lines;
+            InputStream in = Files.newInputStream(dest);
+            if (compression != Compression.NONE) {
+                in = new GZIPInputStream(in);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                lines = reader.lines().collect(Collectors.toList());
+            }
+            assertThat(compression.toString(), lines, is(expected));
+        }
+    }
+
+    @Test
+    public void testToFileDurably() throws Exception {
+        // given the data, and an existing file to replace
+        Path dest = folder.getRoot().toPath().resolve("durable.txt");
+        Files.write(dest, Collections.singletonList("old"), StandardCharsets.UTF_8);
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+
+        for (FsyncPolicy fsync : Arrays.asList(FsyncPolicy.NONE, FsyncPolicy.AT_END, FsyncPolicy.everyBytes(64 << 10))) {
+            // when the collector is tested
+            Path path = expected.stream().collect(OtherCollectors.toFileDurably(dest, fsync));
+
+            // the file is replaced with no data lost, and no temp file is left behind
+            assertThat(path, is(dest));
+            assertThat(fsync.toString(), Files.readAllLines(dest, StandardCharsets.UTF_8), is(expected));
+            assertThat(fsync.toString(), folder.getRoot().list().length, is(1));
+        }
+    }
+
+    @Test
+    public void testDurablePermissions() throws Exception {
+        // given a file system with POSIX permissions
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path plain = folder.getRoot().toPath().resolve("plain.txt");
+        Path durable = folder.getRoot().toPath().resolve("durable.txt");
+
+        // when the same data is written plainly and durably
+        Stream.of("line").collect(OtherCollectors.toFile(plain));
+        Stream.of("line").collect(OtherCollectors.toFileDurably(durable, FsyncPolicy.AT_END));
+
+        // both files get the same permissions
+        assertThat(Files.getPosixFilePermissions(durable), is(Files.getPosixFilePermissions(plain)));
+    }
+
+    @Test
+    public void testDurableAbort() throws Exception {
+        // given an existing file
+        Path dest = folder.getRoot().toPath().resolve("durable.txt");
+        Files.write(dest, Collections.singletonList("old"), StandardCharsets.UTF_8);
+
+        // when the upstream fails part way through, and the collector is closed
+        FileCollector collector = new FileCollector(dest, StandardCharsets.UTF_8, FsyncPolicy.AT_END);
+        try {
+            IntStream.range(0, 100_000).mapToObj(i -> {
+                if (i == 50_000) {
+                    throw new IllegalStateException("upstream failed");
+                }
+                return "line " + i;
+            }).collect(collector);
+            fail("expected the upstream to fail");
+        } catch (IllegalStateException e) {
+            collector.close();
+        }
+
+        // the existing file is untouched, and the temp file is deleted
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(Collections.singletonList("old")));
+        assertThat(folder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        // given the data
+        Path dest = folder.getRoot().toPath().resolve("metrics.txt");
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+        AtomicReference<WriteMetrics> metrics = new AtomicReference<>();
+
+        // when the collector is tested
+        expected.stream().collect(OtherCollectors.toFile(dest, metrics::set));
+
+        // the listener gets counts that match the file
+        WriteMetrics m = metrics.get();
+        assertThat(m.lines(), is(100_000L));
+        assertThat(m.chars(), is(expected.stream().mapToLong(String::length).sum()));
+        assertThat(m.bytes(), is(Files.size(dest)));
+        assertTrue(m.flushes() > 0);
+        assertTrue(m.writes() > m.flushes());
+        assertTrue(m.writeNanos() > 0);
+        assertTrue(m.encodeNanos() > 0);
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(expected));
+
+        // and every leaf of a parallel stream is counted
+        expected.parallelStream().collect(OtherCollectors.toFile(dest, metrics::set));
+        assertThat(metrics.get().lines(), is(100_000L));
+        assertThat(metrics.get().bytes(), is(Files.size(dest)));
+    }
+
+    @Test
+    public void testBufferSizing() throws Exception {
+        // given the data, with a line longer than the smallest buffer
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+        expected.set(500, String.join("", Collections.nCopies(1_000, "long line ")));
+
+        for (BufferSizing sizing : Arrays.asList(BufferSizing.DEFAULT, BufferSizing.fixed(1 << 10),
+                BufferSizing.fixed(1 << 20), BufferSizing.adaptive(1 << 10, 1 << 20))) {
+            // when the collector is tested
+            Path dest = folder.getRoot().toPath().resolve("sized.txt");
+            Path path = expected.stream().collect(OtherCollectors.toFile(dest, sizing));
+
+            // collector returns the path it wrote, and no data is lost
+            assertThat(path, is(dest));
+            assertThat(sizing.toString(), Files.readAllLines(dest, StandardCharsets.UTF_8), is(expected));
+        }
+
+        // and behind the writers' 8K chunks, a fixed buffer writes exactly its own size each time
+        for (int size : new int[] {1 << 10, 1 << 20}) {
+            Path dest = folder.getRoot().toPath().resolve("fixed.txt");
+            FileCollector collector = new FileCollector(dest, StandardCharsets.UTF_8, BufferSizing.fixed(size));
+            collector.withMetrics(m -> {});
+            expected.stream().collect(collector);
+            long bytes = Files.size(dest);
+            assertThat(collector.metrics().writes(), is((bytes + size - 1) / size));
+        }
+
+        // while an adaptive one that starts smaller than the chunks still gets to measure, and grows
+        Path dest = folder.getRoot().toPath().resolve("adaptive.txt");
+        FileCollector collector = new FileCollector(dest, StandardCharsets.UTF_8, BufferSizing.adaptive(1 << 10, 1 << 20));
+        AdaptiveOutputStream adaptive = (AdaptiveOutputStream) collector.out;
+        expected.stream().collect(collector);
+        assertTrue(adaptive.bufferSize() > 1 << 10);
+    }
+
+    @Test
+    public void testRecordTerminator() throws Exception {
+        // given the data, with a record longer than the writer's buffer
+        List<String> records = IntStream.range(0, 10_000).mapToObj(i -> "record " + i).collect(Collectors.toList());
+        records.set(50, String.join("", Collections.nCopies(2_000, "long record ")));
+
+        for (String terminator : Arrays.asList("\n", "\r\n", "\0", "")) {
+            // when the collector is tested
+            Path dest = folder.getRoot().toPath().resolve("records.txt");
+            records.stream().collect(OtherCollectors.toFile(dest, terminator));
+
+            // each record is followed by the terminator, and nothing else
+            String actual = new String(Files.readAllBytes(dest), StandardCharsets.UTF_8);
+            assertThat(actual, is(expected(records, terminator)));
+        }
+    }
+
+    private static String expected(List<String> records, String terminator) {
+        StringBuilder sb = new StringBuilder();
+        records.forEach(r -> sb.append(r).append(terminator));
+        return sb.toString();
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        // given the data, in batches of various sizes, including empty ones
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+        List<List<String>> batches = IntStream.range(0, 1_000)
+                .mapToObj(i -> expected.subList(i * 100, i * 100 + 100))
+                .collect(Collectors.toList());
+        batches.add(500, Collections.emptyList());
+
+        // when the collectors are tested
+        Path fromBatches = batches.stream().collect(OtherCollectors.toFileFromBatches(folder.getRoot().toPath().resolve("batches.txt")));
+        Path fromArrays = batches.stream().map(b -> b.toArray(new String[0])).collect(OtherCollectors.toFileFromArrays(folder.getRoot().toPath().resolve("arrays.txt")));
+
+        // no data is lost
+        assertThat(Files.readAllLines(fromBatches, StandardCharsets.UTF_8), is(expected));
+        assertThat(Files.readAllLines(fromArrays, StandardCharsets.UTF_8), is(expected));
+    }
+}
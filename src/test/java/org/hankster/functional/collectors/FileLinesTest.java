@@ -0,0 +1,106 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class FileLinesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLines() throws Exception {
+        // given a file written by the collector, with multi-byte characters and empty lines
+        Path source = folder.getRoot().toPath().resolve("in.txt");
+        List<String> expected = IntStream.range(0, 200_000).mapToObj(i -> i % 10 == 0 ? "" : "line " + i + " é中").collect(Collectors.toList());
+        expected.stream().collect(OtherCollectors.toFile(source));
+
+        // when the file is read sequentially and in parallel
+        List<String> sequential;
+        try (Stream<String> lines = FileLines.lines(source)) {
+            sequential = lines.collect(Collectors.toList());
+        }
+        List<String> parallel;
+        try (Stream<String> lines = FileLines.lines(source)) {
+            parallel = lines.parallel().collect(Collectors.toList());
+        }
+
+        // every line is read, in order
+        assertThat(sequential, is(expected));
+        assertThat(parallel, is(expected));
+    }
+
+    @Test
+    public void testSplitsOnLineBoundaries() throws Exception {
+        // given a file with CRLF separators and no separator after the last line
+        Path source = folder.getRoot().toPath().resolve("crlf.txt");
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "record " + i).collect(Collectors.toList());
+        Files.write(source, String.join("\r\n", expected).getBytes(StandardCharsets.UTF_8));
+
+        // when the spliterator is split down to its smallest parts
+        try (Stream<String> lines = FileLines.lines(source)) {
+            Spliterator<String> spliterator = lines.spliterator();
+            Spliterator<String> prefix = spliterator.trySplit();
+
+            // it splits, and the parts hold every line, in order
+            assertThat(prefix, is(notNullValue()));
+            List<String> actual = Stream.concat(split(prefix), split(spliterator)).collect(Collectors.toList());
+            assertThat(actual, is(expected));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsplittableCharset() throws Exception {
+        // given a character set that uses the line feed byte inside other characters, reading fails right away
+        Path source = folder.getRoot().toPath().resolve("utf16.txt");
+        Files.write(source, Arrays.asList("a", "b"), StandardCharsets.UTF_16);
+        FileLines.lines(source, StandardCharsets.UTF_16);
+    }
+
+    @Test
+    public void testDecodeOnlyCharset() throws Exception {
+        // given a character set that has no encoder, and a file of lines in it
+        assumeTrue(Charset.isSupported("ISO-2022-CN"));
+        Charset cs = Charset.forName("ISO-2022-CN");
+        Path source = folder.getRoot().toPath().resolve("iso2022.txt");
+        List<String> expected = IntStream.range(0, 10_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+        Files.write(source, expected, StandardCharsets.US_ASCII);
+
+        // when the file is read in parallel
+        List<String> actual;
+        try (Stream<String> lines = FileLines.lines(source, cs)) {
+            actual = lines.parallel().collect(Collectors.toList());
+        }
+
+        // the decoder is checked instead, and every line is read, in order
+        assertThat(actual, is(expected));
+    }
+
+    private static Stream<String> split(Spliterator<String> spliterator) {
+        Spliterator<String> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            List<String> lines = new ArrayList<>();
+            spliterator.forEachRemaining(lines::add);
+            return lines.stream();
+        }
+        return Stream.concat(split(prefix), split(spliterator));
+    }
+}
@@ -0,0 +1,55 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class MappedFileCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRemapsAndTruncates() throws Exception {
+        // given the data, with multi-byte chars, and a window small enough to be remapped many times
+        Path dest = folder.getRoot().toPath().resolve("out.txt");
+        List<String> expected = IntStream.range(0, 50_000).mapToObj(i -> "line " + i + " é€😀").collect(Collectors.toList());
+
+        // when the collector is tested
+        Path path = expected.stream().collect(new MappedFileCollector(dest, StandardCharsets.UTF_8, 1024));
+
+        // collector returns the path it wrote
+        assertThat(path, is(dest));
+
+        // no data is lost, and the file has no zero-filled tail
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(expected));
+        long expectedSize = expected.stream().mapToLong(s -> s.getBytes(StandardCharsets.UTF_8).length + System.lineSeparator().length()).sum();
+        assertThat(Files.size(dest), is(expectedSize));
+    }
+
+    @Test
+    public void testAppend() throws Exception {
+        // given a file that already has a line in it
+        Path dest = folder.getRoot().toPath().resolve("append.txt");
+        Stream.of("first").collect(OtherCollectors.toMappedFile(dest));
+
+        // when the collector appends to it
+        Stream.of("second", "third").collect(OtherCollectors.toMappedFile(dest, StandardOpenOption.APPEND));
+
+        // the new lines follow the existing ones
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(Arrays.asList("first", "second", "third")));
+    }
+}
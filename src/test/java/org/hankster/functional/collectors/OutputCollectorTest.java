@@ -0,0 +1,65 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class OutputCollectorTest {
+
+    @Test
+    public void testToChannel() throws Exception {
+        // given the data, and a pipe with a reader on the other end
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+        Pipe pipe = Pipe.open();
+        CompletableFuture<List<String>> read = CompletableFuture.supplyAsync(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(pipe.source()), StandardCharsets.UTF_8))) {
+                return reader.lines().collect(Collectors.toList());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // when the collector is tested
+        Pipe.SinkChannel sink = expected.stream().collect(OtherCollectors.toChannel(pipe.sink(), true));
+
+        // collector returns the channel, closed, and the reader sees every line
+        assertThat(sink, is(pipe.sink()));
+        assertFalse(sink.isOpen());
+        assertThat(read.get(), is(expected));
+    }
+
+    @Test
+    public void testTargetLeftOpen() throws Exception {
+        // given a stream that remembers whether it was closed
+        boolean[] closed = {false};
+        ByteArrayOutputStream target = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        // when two collectors write to it in turn
+        Arrays.asList("a", "b").stream().collect(OtherCollectors.toOutputStream(target, false));
+        Arrays.asList("c").stream().collect(OutputCollector.ofStream(target, StandardCharsets.UTF_8, false).withRecordTerminator("\n"));
+
+        // it is flushed but not closed, so both collectors' output is there
+        assertFalse(closed[0]);
+        String sep = System.lineSeparator();
+        assertThat(new String(target.toByteArray(), StandardCharsets.UTF_8), is("a" + sep + "b" + sep + "c\n"));
+    }
+}
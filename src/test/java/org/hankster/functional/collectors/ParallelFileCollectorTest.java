@@ -0,0 +1,55 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class ParallelFileCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParallelWritesInEncounterOrder() throws Exception {
+        // given the data
+        Path dest = folder.getRoot().toPath().resolve("out.txt");
+        List<String> expected = IntStream.range(0, 200_000).mapToObj(i -> "line " + i + " é").collect(Collectors.toList());
+
+        // when the collector is tested, with a spill threshold small enough that shards spill to temp files
+        Path path = expected.parallelStream().collect(new ParallelFileCollector(dest, StandardCharsets.UTF_8, 64 << 10));
+
+        // collector returns the path it wrote
+        assertThat(path, is(dest));
+
+        // no data is lost and the lines are in encounter order
+        assertThat(Files.readAllLines(dest, StandardCharsets.UTF_8), is(expected));
+
+        // the temp files have been cleaned up
+        File[] files = folder.getRoot().listFiles();
+        assertThat(files.length, is(1));
+    }
+
+    @Test
+    public void testEmptyUpstreamCreatesFile() throws Exception {
+        // given the data
+        Path dest = folder.getRoot().toPath().resolve("empty.txt");
+
+        // when the collector is tested
+        IntStream.range(0, 0).mapToObj(Integer::toString).parallel().collect(OtherCollectors.toFileInParallel(dest));
+
+        // the file is created even if the upstream is empty
+        assertTrue(Files.exists(dest));
+        assertThat(Files.size(dest), is(0L));
+    }
+}
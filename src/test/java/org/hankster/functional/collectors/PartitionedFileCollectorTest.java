@@ -0,0 +1,42 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class PartitionedFileCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPartitionsWithEvictions() throws Exception {
+        // given the data, spread over more keys than may be open at once
+        Path dir = folder.getRoot().toPath();
+        List<String> data = IntStream.range(0, 10_000).mapToObj(i -> (i % 10) + ":" + i).collect(Collectors.toList());
+
+        // when the collector is tested
+        Map<String, Path> paths = data.stream().collect(new PartitionedFileCollector<>(
+                s -> s.substring(0, 1), k -> dir.resolve("part-" + k + ".txt"), StandardCharsets.UTF_8, 3));
+
+        // there is a file per key, in the order the keys were first seen
+        assertThat(paths.keySet().stream().collect(Collectors.joining()), is("0123456789"));
+
+        // each file holds its key's lines in encounter order, even though it was closed and reopened many times
+        for (Map.Entry<String, Path> entry : paths.entrySet()) {
+            List<String> expected = data.stream().filter(s -> s.startsWith(entry.getKey())).collect(Collectors.toList());
+            assertThat(Files.readAllLines(entry.getValue(), StandardCharsets.UTF_8), is(expected));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class RollingFileCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRollsOverByLinesInParallel() throws Exception {
+        // given the data
+        Path dir = folder.getRoot().toPath();
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+
+        // when the collector is tested
+        List<Path> paths = expected.parallelStream().collect(OtherCollectors.toRollingFiles(dir, "part-%05d.txt", Long.MAX_VALUE, 1_000));
+
+        // the files are named in order, none holds more than maxLines, and together they hold every line in encounter order
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            assertThat(paths.get(i), is(dir.resolve(String.format("part-%05d.txt", i))));
+            List<String> lines = Files.readAllLines(paths.get(i), StandardCharsets.UTF_8);
+            assertTrue(lines.size() <= 1_000);
+            actual.addAll(lines);
+        }
+        assertThat(actual, is(expected));
+
+        // the temp files have been cleaned up
+        assertThat(folder.getRoot().listFiles().length, is(paths.size()));
+    }
+
+    @Test
+    public void testRolledFilePermissions() throws Exception {
+        // given a file system with POSIX permissions
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path dir = folder.getRoot().toPath();
+        Path plain = dir.resolve("plain.txt");
+
+        // when the same data is written to a plain file and to rolled files
+        Stream.of("line").collect(OtherCollectors.toFile(plain));
+        List<Path> paths = Stream.of("line", "line").collect(OtherCollectors.toRollingFiles(dir, "roll-%d.txt", Long.MAX_VALUE, 1));
+
+        // the rolled files get the same permissions as the plain one
+        for (Path path : paths) {
+            assertThat(Files.getPosixFilePermissions(path), is(Files.getPosixFilePermissions(plain)));
+        }
+    }
+
+    @Test
+    public void testRollsOverByBytes() throws Exception {
+        // given the data, 10 bytes per line with the separator
+        Path dir = folder.getRoot().toPath();
+        String separator = System.lineSeparator();
+        List<String> expected = IntStream.range(0, 1_000).mapToObj(i -> String.format("%0" + (10 - separator.length()) + "d", i)).collect(Collectors.toList());
+
+        // when the collector is tested
+        List<Path> paths = expected.stream().collect(OtherCollectors.toRollingFiles(dir, "part-%d.txt", 100, Long.MAX_VALUE));
+
+        // each file holds exactly maxBytes
+        assertThat(paths.size(), is(100));
+        for (Path path : paths) {
+            assertThat(Files.size(path), is(100L));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class SpillingStreamCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSpillsPastBudget() throws Exception {
+        // given the data, some of it longer than the scratch and file buffers, and a budget that holds a tenth of it
+        List<String> expected = IntStream.range(0, 100_000).mapToObj(i -> "element " + i).collect(Collectors.toList());
+        expected.set(70_000, String.join("", Collections.nCopies(10_000, "big element ")));
+        Path tempDir = folder.getRoot().toPath();
+
+        for (boolean parallel : Arrays.asList(false, true)) {
+            // when the collector is tested
+            Stream<String> upstream = parallel ? expected.parallelStream() : expected.stream();
+            try (Stream<String> stream = upstream.collect(new SpillingStreamCollector<>(RecordCodec.utf8(), 10_000, s -> 1, tempDir))) {
+                // some elements are spilled, and the stream has every element in order
+                assertTrue(tempDir.toFile().list().length > 0);
+                assertThat(stream.collect(Collectors.toList()), is(expected));
+            }
+
+            // closing the stream deletes the temp files
+            assertThat(tempDir.toFile().list().length, is(0));
+        }
+    }
+
+    @Test
+    public void testCustomCodecAndSize() throws Exception {
+        // given a codec for longs, and a byte budget of 8 bytes per element for 100 elements
+        RecordCodec<Long> longs = RecordCodec.of((l, buffer) -> buffer.putLong(l), ByteBuffer::getLong);
+
+        // when the collector is tested
+        try (Stream<Long> stream = IntStream.range(0, 10_000).mapToObj(i -> (long) i * i)
+                .collect(OtherCollectors.toStream(longs, 800, l -> 8))) {
+
+            // the size is known, and the elements come back as written
+            Spliterator<Long> spliterator = stream.spliterator();
+            assertThat(spliterator.getExactSizeIfKnown(), is(10_000L));
+            List<Long> actual = new ArrayList<>();
+            spliterator.forEachRemaining(actual::add);
+            assertThat(actual.size(), is(10_000));
+            assertThat(actual.get(9_999), is(9_999L * 9_999L));
+        }
+    }
+
+    @Test
+    public void testAllInMemory() {
+        // given a budget bigger than the upstream, nothing is spilled and the stream is the same
+        List<Integer> expected = IntStream.range(0, 1_000).boxed().collect(Collectors.toList());
+        try (Stream<Integer> stream = expected.stream().collect(OtherCollectors.toStream(RecordCodec.serializable(), 1_000))) {
+            assertThat(stream.collect(Collectors.toList()), is(expected));
+        }
+    }
+}
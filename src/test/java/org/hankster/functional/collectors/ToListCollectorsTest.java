@@ -0,0 +1,169 @@
+package org.hankster.functional.collectors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class ToListCollectorsTest {
+
+    @Test
+    public void testPrimitiveLists() {
+        // given the data
+        int[] expected = IntStream.range(0, 100_000).map(i -> i * 3).toArray();
+
+        // when it is collected unboxed, from primitive streams and through the collectors, sequentially and in parallel
+        IntArrayList ints = IntStream.of(expected).parallel().collect(IntArrayList::new, IntArrayList::addInt, IntArrayList::addAll);
+        IntArrayList mappedInts = IntStream.of(expected).boxed().parallel().collect(ToListCollectors.toIntList(Integer::intValue));
+        LongArrayList longs = IntStream.of(expected).boxed().collect(ToListCollectors.toLongList(i -> (long) i));
+        DoubleArrayList doubles = IntStream.of(expected).boxed().parallel().collect(ToListCollectors.toDoubleList(i -> i / 2.0));
+
+        // every element comes back, in order
+        assertArrayEquals(expected, ints.toIntArray());
+        assertArrayEquals(expected, mappedInts.toIntArray());
+        assertArrayEquals(IntStream.of(expected).asLongStream().toArray(), longs.longStream().toArray());
+        assertArrayEquals(IntStream.of(expected).mapToDouble(i -> i / 2.0).toArray(), doubles.toDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void testPrimitiveListIsAList() {
+        // given a list of longs and the same list boxed
+        LongArrayList longs = LongStream.range(0, 20).collect(LongArrayList::new, LongArrayList::addLong, LongArrayList::addAll);
+        List<Long> boxed = LongStream.range(0, 20).boxed().collect(Collectors.toCollection(ArrayList::new));
+
+        // when both are changed through the List interface
+        for (List<Long> list : Arrays.asList(longs, boxed)) {
+            list.add(5, -1L);
+            list.remove(0);
+            list.set(10, 100L);
+            list.subList(15, 18).clear();
+        }
+
+        // they are still equal
+        assertThat(longs, is(boxed));
+        assertThat(longs.hashCode(), is(boxed.hashCode()));
+        assertThat(longs.getLong(4), is(-1L));
+        assertThat(longs.size(), is(17));
+    }
+
+    @Test
+    public void testToSizedList() {
+        // given sized and unsized sources
+        List<Integer> expected = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        List<Integer> linked = new LinkedList<>(expected);
+
+        // when they are collected, sequentially and in parallel
+        List<Integer> sequential = ToListCollectors.toSizedList(expected.stream().map(i -> i));
+        List<Integer> parallel = ToListCollectors.toSizedList(IntStream.range(0, 100_000).boxed().parallel());
+        List<Integer> filtered = ToListCollectors.toSizedList(expected.parallelStream().filter(i -> i % 3 == 0));
+        List<Integer> unsplittable = ToListCollectors.toSizedList(linked.parallelStream());
+
+        // every element comes back, in order, in a list that can be changed
+        assertThat(sequential, is(expected));
+        assertThat(parallel, is(expected));
+        assertThat(filtered, is(expected.stream().filter(i -> i % 3 == 0).collect(Collectors.toList())));
+        assertThat(unsplittable, is(expected));
+        parallel.add(-1);
+        assertThat(parallel.size(), is(100_001));
+    }
+
+    @Test
+    public void testToListInParallel() {
+        // given the data
+        List<Integer> expected = IntStream.range(0, 1_000_000).boxed().collect(Collectors.toList());
+
+        // when it is collected, in parallel and sequentially
+        List<Integer> parallel = expected.parallelStream().collect(ToListCollectors.toListInParallel());
+        List<Integer> sequential = expected.stream().collect(ToListCollectors.toListInParallel());
+        List<Integer> empty = IntStream.range(0, 0).boxed().parallel().collect(ToListCollectors.toListInParallel());
+
+        // every element comes back, in order
+        assertThat(parallel, is(expected));
+        assertThat(sequential, is(expected));
+        assertTrue(empty.isEmpty());
+    }
+
+    @Test
+    public void testToImmutableList() {
+        // given lists of every representation
+        for (int size : new int[] {0, 1, 2, 3, 100_000}) {
+            List<Integer> expected = IntStream.range(0, size).boxed().collect(Collectors.toList());
+
+            // when they are collected
+            List<Integer> list = expected.parallelStream().collect(ToListCollectors.toImmutableList());
+
+            // they are equal to the source, and can't be changed
+            assertThat(list, is(expected));
+            assertThat(list.hashCode(), is(expected.hashCode()));
+            assertArrayEquals(expected.toArray(), list.toArray());
+            try {
+                list.add(-1);
+                fail("list of " + size + " should be unmodifiable");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+        assertThat(Arrays.asList("a", null).stream().collect(ToListCollectors.toImmutableList()), is(Arrays.asList("a", null)));
+    }
+
+    @Test
+    public void testToOffHeapList() {
+        // given the data, enough of it to fill several buffers
+        List<Long> expected = LongStream.range(0, 500_000).map(l -> l * 31).boxed().collect(Collectors.toList());
+
+        // when it is collected off the heap, sequentially and in parallel
+        OffHeapList<Long> sequential = expected.stream().collect(ToListCollectors.toOffHeapList(RecordCodec.longs(), 8));
+        OffHeapList<Long> parallel = expected.parallelStream().collect(ToListCollectors.toOffHeapList(RecordCodec.longs(), 8));
+
+        // every element comes back, in order, by index and streamed
+        assertThat(sequential, is(expected));
+        assertThat(parallel.get(123_456), is(expected.get(123_456)));
+        assertThat(parallel.stream().collect(Collectors.toList()), is(expected));
+        assertThat(parallel.parallelStream().mapToLong(Long::longValue).sum(), is(expected.stream().mapToLong(Long::longValue).sum()));
+        assertTrue(sequential.offHeapBytes() >= 8L * expected.size());
+    }
+
+    @Test
+    public void testOffHeapListStaysSmall() {
+        // given a small amount of data, 8 KB of longs
+        List<Long> expected = LongStream.range(0, 1_000).boxed().collect(Collectors.toList());
+
+        // when it is collected in parallel, so that many leaves each start their own buffers
+        OffHeapList<Long> list = expected.parallelStream().collect(ToListCollectors.toOffHeapList(RecordCodec.longs(), 8));
+
+        // the buffers grow with the data, rather than every leaf taking a whole chunk
+        assertThat(list, is(expected));
+        assertTrue(list.offHeapBytes() + " bytes off-heap", list.offHeapBytes() <= 4 * 8 * 1_000);
+    }
+
+    @Test
+    public void testOffHeapListPadsRecords() {
+        // given strings that fit in 16 bytes, written with their length
+        RecordCodec<String> codec = RecordCodec.of((s, buffer) -> buffer.put((byte) s.length()).put(s.getBytes()), buffer -> {
+            byte[] bytes = new byte[buffer.get()];
+            buffer.get(bytes);
+            return new String(bytes);
+        });
+
+        // when they are collected
+        OffHeapList<String> list = Stream.of("a", "", "fifteen chars..").collect(ToListCollectors.toOffHeapList(codec, 16));
+
+        // they come back, and a longer one is rejected
+        assertThat(list, is(Arrays.asList("a", "", "fifteen chars..")));
+        try {
+            Stream.of("sixteen chars...").collect(ToListCollectors.toOffHeapList(codec, 16));
+            fail("record should be too long");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}